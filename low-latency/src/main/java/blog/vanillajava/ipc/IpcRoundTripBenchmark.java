@@ -0,0 +1,191 @@
+package blog.vanillajava.ipc;
+
+import blog.vanillajava.slowfile.SlowFileIO;
+import blog.vanillajava.triviallycopyable.MarketDataFlyweight;
+import blog.vanillajava.triviallycopyable.TriviallyCopyableMarketData;
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.core.util.Histogram;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the round-trip latency of a {@link TriviallyCopyableMarketData} tick sent from this JVM to an echo
+ * process and back, over a pair of {@link ShmChannel}s with each {@link WaitStrategy}, and over loopback TCP.
+ *
+ * <p>The echo process is started with the same class path and JVM options, so both ends of each run are
+ * separate JVMs as they would be in production. Each tick is sent once the previous one has returned, and
+ * the first {@code -Dwarmup=} round trips are not recorded. Use {@code -Dcount=} to change the number of
+ * round trips measured.</p>
+ *
+ * <p>Both processes need a core each; with fewer, the spinning process competes with the one it's waiting
+ * for and the {@code BUSY_SPIN} latencies are the scheduler's time slice.</p>
+ */
+public class IpcRoundTripBenchmark {
+
+    private static final int COUNT = Integer.getInteger("count", 200_000);
+    private static final int WARMUP = Integer.getInteger("warmup", 50_000);
+    private static final int CAPACITY = 1024;
+    private static final int LENGTH = MarketDataFlyweight.recordLength();
+    public static final String PING_FILE = "deleteme.ping.shm";
+    public static final String PONG_FILE = "deleteme.pong.shm";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("echo-shm")) {
+            echoShm(WaitStrategy.valueOf(args[1]));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("echo-tcp")) {
+            echoTcp(Integer.parseInt(args[1]));
+            return;
+        }
+
+        for (WaitStrategy waitStrategy : WaitStrategy.values())
+            pingShm(waitStrategy);
+        pingTcp();
+    }
+
+    private static void pingShm(WaitStrategy waitStrategy) throws IOException, InterruptedException {
+        File dir = SlowFileIO.determineWorkingDirectory();
+        File pingFile = new File(dir, PING_FILE);
+        File pongFile = new File(dir, PONG_FILE);
+        delete(pingFile);
+        delete(pongFile);
+
+        Process echo = startEcho("echo-shm", waitStrategy.name());
+        try (ShmChannel ping = new ShmChannel(pingFile, CAPACITY);
+             ShmChannel pong = new ShmChannel(pongFile, CAPACITY)) {
+            TriviallyCopyableMarketData md = new TriviallyCopyableMarketData();
+            Histogram histogram = new Histogram();
+            for (int i = -WARMUP; i < COUNT; i++) {
+                md.time(System.nanoTime());
+                ping.publish(md, waitStrategy);
+                pong.take(md, waitStrategy);
+                if (i >= 0)
+                    histogram.sampleNanos(System.nanoTime() - md.time());
+            }
+            printLatency("shm " + waitStrategy, histogram);
+        } finally {
+            stop(echo);
+            delete(pingFile);
+            delete(pongFile);
+        }
+    }
+
+    private static void echoShm(WaitStrategy waitStrategy) {
+        File dir = SlowFileIO.determineWorkingDirectory();
+        try (ShmChannel ping = new ShmChannel(new File(dir, PING_FILE), CAPACITY);
+             ShmChannel pong = new ShmChannel(new File(dir, PONG_FILE), CAPACITY)) {
+            TriviallyCopyableMarketData md = new TriviallyCopyableMarketData();
+            // Runs until the parent process stops it
+            while (true) {
+                ping.take(md, waitStrategy);
+                pong.publish(md, waitStrategy);
+            }
+        }
+    }
+
+    private static void pingTcp() throws IOException, InterruptedException {
+        Process echo = null;
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            echo = startEcho("echo-tcp", Integer.toString(server.socket().getLocalPort()));
+            try (SocketChannel channel = server.accept()) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                TriviallyCopyableMarketData md = new TriviallyCopyableMarketData();
+                Bytes<ByteBuffer> bytes = Bytes.elasticByteBuffer(LENGTH);
+                Histogram histogram = new Histogram();
+                for (int i = -WARMUP; i < COUNT; i++) {
+                    md.time(System.nanoTime());
+                    write(channel, bytes, md);
+                    read(channel, bytes, md);
+                    if (i >= 0)
+                        histogram.sampleNanos(System.nanoTime() - md.time());
+                }
+                bytes.releaseLast();
+                printLatency("tcp loopback", histogram);
+            }
+        } finally {
+            if (echo != null)
+                stop(echo);
+        }
+    }
+
+    private static void echoTcp(int port) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port))) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            TriviallyCopyableMarketData md = new TriviallyCopyableMarketData();
+            Bytes<ByteBuffer> bytes = Bytes.elasticByteBuffer(LENGTH);
+            // Runs until the parent process closes the connection
+            while (true) {
+                read(channel, bytes, md);
+                write(channel, bytes, md);
+            }
+        } catch (EOFException expected) {
+            // the parent has finished
+        }
+    }
+
+    private static void write(SocketChannel channel, Bytes<ByteBuffer> bytes, TriviallyCopyableMarketData md) throws IOException {
+        bytes.clear();
+        md.writeMarshallable(bytes);
+        ByteBuffer bb = bytes.underlyingObject();
+        bb.clear().limit(LENGTH);
+        while (bb.hasRemaining())
+            channel.write(bb);
+    }
+
+    private static void read(SocketChannel channel, Bytes<ByteBuffer> bytes, TriviallyCopyableMarketData md) throws IOException {
+        ByteBuffer bb = bytes.underlyingObject();
+        bb.clear().limit(LENGTH);
+        while (bb.hasRemaining())
+            if (channel.read(bb) < 0)
+                throw new EOFException();
+        bytes.readPositionRemaining(0, LENGTH);
+        md.readMarshallable(bytes);
+    }
+
+    /**
+     * Starts this class in another JVM with the same class path and JVM options.
+     */
+    private static Process startEcho(String... args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(IpcRoundTripBenchmark.class.getName());
+        for (String arg : args)
+            command.add(arg);
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    private static void stop(Process process) throws InterruptedException {
+        process.destroy();
+        process.waitFor();
+    }
+
+    private static void printLatency(String label, Histogram histogram) {
+        System.out.printf("%s round trip latency ns: p50 %,.0f, p99 %,.0f, p99.9 %,.0f, p99.99 %,.0f%n",
+                label,
+                histogram.percentile(0.50),
+                histogram.percentile(0.99),
+                histogram.percentile(0.999),
+                histogram.percentile(0.9999));
+    }
+
+    private static void delete(File file) {
+        if (file.exists() && !file.delete())
+            System.err.println("Warning: Failed to delete " + file);
+    }
+}
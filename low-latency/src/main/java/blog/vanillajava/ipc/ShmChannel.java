@@ -0,0 +1,143 @@
+package blog.vanillajava.ipc;
+
+import blog.vanillajava.triviallycopyable.MarketDataFlyweight;
+import blog.vanillajava.triviallycopyable.TriviallyCopyableMarketData;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.MappedBytes;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.UncheckedIOException;
+
+/**
+ * A single-producer, single-consumer channel of {@link TriviallyCopyableMarketData} records in a
+ * memory-mapped file, so one JVM can pass ticks to another on the same machine without a system call.
+ * Placing the file in {@code /dev/shm} keeps it in memory, with nothing written to disk.
+ *
+ * <p>The file has a header with the sequence of the next message to write and the next to read, each in
+ * its own cache line, followed by a ring of slots. Each slot starts with the sequence of the message plus
+ * one, written with an ordered write after the record, so the consumer sees the whole record when it sees
+ * the sequence. The producer waits for the consumer rather than overwrite an unread message.</p>
+ *
+ * <p>Each process opens the same file and uses either the producer methods {@link #offer} and
+ * {@link #publish} or the consumer methods {@link #poll} and {@link #take}. Both sides resume from the
+ * sequences in the header, so either process can be restarted.</p>
+ */
+public final class ShmChannel implements Closeable {
+    static final int CACHE_LINE = 64;
+    static final int WRITE_SEQUENCE = 0;
+    static final int READ_SEQUENCE = CACHE_LINE;
+    static final int SLOTS_START = 2 * CACHE_LINE;
+    static final int SLOT_HEADER = 8;
+    static final int SLOT_SIZE = (SLOT_HEADER + MarketDataFlyweight.recordLength() + CACHE_LINE - 1) & -CACHE_LINE;
+
+    private final int capacity;
+    private final MappedBytes bytes;
+    private final BytesStore<?, ?> store;
+    private final MarketDataFlyweight flyweight = new MarketDataFlyweight();
+
+    // producer side
+    private long writeSequence;
+    private long readSequenceCache;
+
+    // consumer side
+    private long readSequence;
+
+    /**
+     * Opens a channel, creating the file if it doesn't exist.
+     *
+     * @param file     the file shared by the producer and consumer.
+     * @param capacity the number of messages the channel can hold, a power of two.
+     *                 Both processes must use the same capacity.
+     */
+    public ShmChannel(File file, int capacity) {
+        if (Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two, was " + capacity);
+        this.capacity = capacity;
+        try {
+            bytes = MappedBytes.singleMappedBytes(file, SLOTS_START + (long) capacity * SLOT_SIZE);
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(e);
+        }
+        // The channel may be opened by one thread and used by another
+        bytes.singleThreadedCheckDisabled(true);
+        store = bytes.bytesStore();
+        writeSequence = store.readVolatileLong(WRITE_SEQUENCE);
+        readSequence = readSequenceCache = store.readVolatileLong(READ_SEQUENCE);
+    }
+
+    private long slotOffset(long sequence) {
+        return SLOTS_START + (sequence & (capacity - 1)) * SLOT_SIZE;
+    }
+
+    /**
+     * Writes a message if there is room for it.
+     *
+     * @param md the message to write.
+     * @return {@code true} if the message was written.
+     */
+    public boolean offer(TriviallyCopyableMarketData md) {
+        long sequence = writeSequence;
+        if (sequence - readSequenceCache >= capacity) {
+            readSequenceCache = store.readVolatileLong(READ_SEQUENCE);
+            if (sequence - readSequenceCache >= capacity)
+                return false;
+        }
+        long offset = slotOffset(sequence);
+        bytes.writePosition(offset + SLOT_HEADER);
+        md.writeMarshallable(bytes);
+        store.writeOrderedLong(offset, sequence + 1);
+        writeSequence = sequence + 1;
+        store.writeOrderedLong(WRITE_SEQUENCE, writeSequence);
+        return true;
+    }
+
+    /**
+     * Writes a message, waiting for the consumer if the channel is full.
+     *
+     * @param md           the message to write.
+     * @param waitStrategy how to wait while the channel is full.
+     */
+    public void publish(TriviallyCopyableMarketData md, WaitStrategy waitStrategy) {
+        while (!offer(md))
+            waitStrategy.idle();
+    }
+
+    /**
+     * Reads the next message if there is one.
+     *
+     * @param md the message to read into.
+     * @return {@code true} if a message was read.
+     */
+    public boolean poll(TriviallyCopyableMarketData md) {
+        long sequence = readSequence;
+        long offset = slotOffset(sequence);
+        if (store.readVolatileLong(offset) != sequence + 1)
+            return false;
+        flyweight.wrap(store, offset + SLOT_HEADER).copyTo(md);
+        readSequence = sequence + 1;
+        // Releases the slot only after the record has been copied
+        store.writeOrderedLong(READ_SEQUENCE, readSequence);
+        return true;
+    }
+
+    /**
+     * Reads the next message, waiting until there is one.
+     *
+     * @param md           the message to read into.
+     * @param waitStrategy how to wait while the channel is empty.
+     */
+    public void take(TriviallyCopyableMarketData md, WaitStrategy waitStrategy) {
+        while (!poll(md))
+            waitStrategy.idle();
+    }
+
+    /**
+     * Unmaps the file. The file itself is left for the other process.
+     */
+    @Override
+    public void close() {
+        bytes.releaseLast();
+    }
+}
@@ -0,0 +1,46 @@
+package blog.vanillajava.ipc;
+
+import net.openhft.chronicle.core.Jvm;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a thread waits for a {@link ShmChannel} to have a message, or to have room for one.
+ *
+ * <p>Each trades latency for CPU. Spinning gives the lowest latency but uses a whole core, yielding lets
+ * other threads share the core, and parking frees the core at the cost of the time taken to wake up.</p>
+ */
+public enum WaitStrategy {
+    /**
+     * Spins on the CPU, for the lowest latency when the thread has a core to itself.
+     */
+    BUSY_SPIN {
+        @Override
+        public void idle() {
+            Jvm.nanoPause();
+        }
+    },
+    /**
+     * Yields to any other thread ready to run on this core.
+     */
+    YIELD {
+        @Override
+        public void idle() {
+            Thread.yield();
+        }
+    },
+    /**
+     * Parks for the shortest time the OS allows, typically 50 to 100 microseconds on Linux.
+     */
+    PARK {
+        @Override
+        public void idle() {
+            LockSupport.parkNanos(1);
+        }
+    };
+
+    /**
+     * Called each time the caller has checked, and there was nothing to do.
+     */
+    public abstract void idle();
+}
@@ -0,0 +1,160 @@
+package blog.vanillajava.ring;
+
+import blog.vanillajava.triviallycopyable.MarketDataFlyweight;
+import blog.vanillajava.triviallycopyable.TriviallyCopyableMarketData;
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+
+/**
+ * A lock-free, single-producer, multi-consumer ring of {@link TriviallyCopyableMarketData} records
+ * held in place in off-heap memory, for broadcasting ticks to many threads.
+ *
+ * <p>The producer never waits for consumers. Each consumer reads at its own pace and detects when
+ * the producer has lapped it, rather than holding the producer back. This is the same trade-off a
+ * multicast feed makes; a consumer which falls behind loses ticks, and knows how many.</p>
+ *
+ * <p>Each slot holds a version, followed by the record. For message {@code n}, the producer sets the
+ * version to {@code 2n+1} while writing and {@code 2n+2} once written. A consumer copies the record
+ * and then re-reads the version, like a seqlock: if it changed, the record was overwritten during the
+ * copy. No locks or CAS operations are used.</p>
+ */
+public final class MarketDataRing {
+    static final int CACHE_LINE = 64;
+    static final int CURSOR = 0;
+    static final int SLOTS_START = 2 * CACHE_LINE;
+    static final int VERSION_LENGTH = 8;
+    static final int SLOT_SIZE = roundUpToCacheLine(VERSION_LENGTH + MarketDataFlyweight.recordLength());
+
+    private final int mask;
+    private final Bytes<Void> bytes;
+    private final BytesStore<?, Void> store;
+    private final Bytes<Void> writeBytes;
+    private long cursor;
+
+    /**
+     * @param capacity the number of records in the ring, a power of two.
+     */
+    public MarketDataRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two, was " + capacity);
+        mask = capacity - 1;
+        bytes = Bytes.allocateDirect(SLOTS_START + (long) capacity * SLOT_SIZE);
+        store = bytes.bytesStore();
+        store.zeroOut(0, store.capacity());
+        writeBytes = store.bytesForWrite();
+        // The producer may be a different thread from the one creating the ring
+        writeBytes.singleThreadedCheckDisabled(true);
+    }
+
+    static int roundUpToCacheLine(int length) {
+        return (length + CACHE_LINE - 1) & -CACHE_LINE;
+    }
+
+    long slotOffset(long sequence) {
+        return SLOTS_START + (sequence & mask) * SLOT_SIZE;
+    }
+
+    /**
+     * Publishes a record to every consumer. Only one thread may publish.
+     *
+     * @param md the record to publish.
+     * @return the sequence number of the record.
+     */
+    public long publish(TriviallyCopyableMarketData md) {
+        long sequence = cursor;
+        long offset = slotOffset(sequence);
+        store.writeOrderedLong(offset, (sequence << 1) | 1);
+        // The version must be visible as odd before any of the record changes
+        MEMORY.storeFence();
+        writeBytes.writePosition(offset + VERSION_LENGTH);
+        md.writeMarshallable(writeBytes);
+        store.writeOrderedLong(offset, (sequence + 1) << 1);
+        cursor = sequence + 1;
+        store.writeOrderedLong(CURSOR, cursor);
+        return sequence;
+    }
+
+    /**
+     * @return the sequence number of the next record to be published.
+     */
+    public long cursor() {
+        return store.readVolatileLong(CURSOR);
+    }
+
+    /**
+     * @return a new consumer which starts with the next record published.
+     */
+    public Consumer consumer() {
+        return new Consumer(cursor());
+    }
+
+    /**
+     * Releases the off-heap memory, once no thread is using the ring.
+     */
+    public void releaseLast() {
+        bytes.releaseLast();
+    }
+
+    /**
+     * Reads records from the ring at its own pace. Each consumer must be used by only one thread.
+     */
+    public final class Consumer {
+        private final MarketDataFlyweight flyweight = new MarketDataFlyweight();
+        private long sequence;
+        private long lost;
+
+        Consumer(long sequence) {
+            this.sequence = sequence;
+        }
+
+        /**
+         * Reads the next record if one has been published.
+         *
+         * <p>If the producer has lapped this consumer, the records overwritten are counted in
+         * {@link #lost()} and the consumer skips ahead to the next record to be published.</p>
+         *
+         * @param md the record to copy into.
+         * @return {@code true} if a record was read.
+         */
+        public boolean read(TriviallyCopyableMarketData md) {
+            long offset = slotOffset(sequence);
+            long expected = (sequence + 1) << 1;
+            long version = store.readVolatileLong(offset);
+            if (version < expected)
+                return false;
+            if (version == expected) {
+                flyweight.wrap(store, offset + VERSION_LENGTH).copyTo(md);
+                // The copy must complete before the version is checked again
+                MEMORY.loadFence();
+                if (store.readVolatileLong(offset) == expected) {
+                    sequence++;
+                    return true;
+                }
+            }
+            overrun();
+            return false;
+        }
+
+        private void overrun() {
+            long next = cursor();
+            lost += next - sequence;
+            sequence = next;
+        }
+
+        /**
+         * @return the sequence number of the next record this consumer will read.
+         */
+        public long sequence() {
+            return sequence;
+        }
+
+        /**
+         * @return the number of records this consumer missed because the producer lapped it.
+         */
+        public long lost() {
+            return lost;
+        }
+    }
+}
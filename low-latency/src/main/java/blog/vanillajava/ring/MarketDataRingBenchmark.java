@@ -0,0 +1,112 @@
+package blog.vanillajava.ring;
+
+import blog.vanillajava.triviallycopyable.TriviallyCopyableMarketData;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Throughput of one producer publishing to a {@link MarketDataRing} read by 1, 2, 4 and 8 consumers.
+ *
+ * <p>The producer publishes as fast as it can, so a slower consumer loses ticks rather than slowing
+ * the producer down. The {@code messagesRead} and {@code messagesLost} counters show how many ticks each
+ * consumer kept up with. Run {@link #main} to run each number of consumers in turn; running through the
+ * JMH command line uses one consumer unless {@code -tg 1,N} is given.</p>
+ *
+ * <p>For latencies, see {@link MarketDataRingLatency}.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Fork(value = 1, warmups = 1)
+@Warmup(iterations = 5, time = 200, timeUnit = MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = MILLISECONDS)
+public class MarketDataRingBenchmark {
+
+    /**
+     * The ring shared by the producer and consumers of a group.
+     */
+    @State(Scope.Group)
+    public static class Shared {
+        @Param({"1024"})
+        int capacity;
+
+        MarketDataRing ring;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            ring = new MarketDataRing(capacity);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            ring.releaseLast();
+        }
+    }
+
+    /**
+     * The producer's record.
+     */
+    @State(Scope.Thread)
+    public static class Producer {
+        final TriviallyCopyableMarketData md = new TriviallyCopyableMarketData();
+    }
+
+    /**
+     * Each consumer's position in the ring, with the ticks it read and lost reported as rates.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Consumer {
+        public long messagesRead;
+        public long messagesLost;
+
+        private final TriviallyCopyableMarketData md = new TriviallyCopyableMarketData();
+        private MarketDataRing.Consumer consumer;
+        private long lostAtStart;
+
+        @Setup(Level.Iteration)
+        public void setup(Shared shared) {
+            if (consumer == null)
+                consumer = shared.ring.consumer();
+            lostAtStart = consumer.lost();
+        }
+
+        void read() {
+            if (consumer.read(md))
+                messagesRead++;
+            messagesLost = consumer.lost() - lostAtStart;
+        }
+    }
+
+    @Benchmark
+    @Group("broadcast")
+    @GroupThreads(1)
+    public long publish(Shared shared, Producer producer) {
+        TriviallyCopyableMarketData md = producer.md;
+        md.time(System.nanoTime());
+        return shared.ring.publish(md);
+    }
+
+    @Benchmark
+    @Group("broadcast")
+    @GroupThreads(1)
+    public void consume(Consumer consumer) {
+        consumer.read();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int consumers : new int[]{1, 2, 4, 8}) {
+            Options opt = new OptionsBuilder()
+                    .include(".*" + MarketDataRingBenchmark.class.getSimpleName() + ".*")
+                    .threadGroups(1, consumers)
+                    .build();
+
+            new Runner(opt).run();
+        }
+    }
+}
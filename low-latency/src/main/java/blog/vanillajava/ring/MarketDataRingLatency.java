@@ -0,0 +1,105 @@
+package blog.vanillajava.ring;
+
+import blog.vanillajava.triviallycopyable.TriviallyCopyableMarketData;
+import net.openhft.chronicle.core.util.Histogram;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures the one-way latency from a producer to each consumer of a {@link MarketDataRing}, with 1, 2, 4
+ * and 8 consumers busy-spinning on their own threads.
+ *
+ * <p>The producer publishes at a steady rate, stamping each tick with {@link System#nanoTime()}, and each
+ * consumer records the time the tick took to reach it. Publishing at a steady rate, rather than as fast as
+ * possible, measures the latency of a feed which consumers can keep up with. Each consumer prints its
+ * p50/p99/p99.9 and how many ticks it lost.</p>
+ *
+ * <p>Use {@code -Drate=} to change the ticks per second, and {@code -Dseconds=} the time for each run.
+ * The consumers need a core each to show their real latency.</p>
+ */
+public class MarketDataRingLatency {
+
+    private static final int RATE = Integer.getInteger("rate", 1_000_000);
+    private static final int SECONDS = Integer.getInteger("seconds", 5);
+    private static final int CAPACITY = Integer.getInteger("capacity", 1024);
+    private static final int WARMUP = 200_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        for (int consumers : new int[]{1, 2, 4, 8})
+            runLatencyBenchmark(consumers);
+    }
+
+    /**
+     * Runs one producer and {@code consumers} consumers, then prints each consumer's latency.
+     *
+     * @param consumers the number of consumer threads
+     */
+    private static void runLatencyBenchmark(int consumers) throws InterruptedException {
+        MarketDataRing ring = new MarketDataRing(CAPACITY);
+        AtomicBoolean running = new AtomicBoolean(true);
+        Histogram[] histograms = new Histogram[consumers];
+        long[] lost = new long[consumers];
+        Thread[] threads = new Thread[consumers];
+        for (int i = 0; i < consumers; i++) {
+            int id = i;
+            histograms[i] = new Histogram();
+            // Create the consumers before publishing so none of them miss the start
+            MarketDataRing.Consumer consumer = ring.consumer();
+            threads[i] = new Thread(() -> {
+                TriviallyCopyableMarketData md = new TriviallyCopyableMarketData();
+                long count = 0;
+                while (running.get()) {
+                    if (!consumer.read(md))
+                        continue;
+                    if (++count == WARMUP)
+                        histograms[id].reset();
+                    histograms[id].sampleNanos(System.nanoTime() - md.time());
+                }
+                lost[id] = consumer.lost();
+            }, "consumer-" + i);
+            threads[i].start();
+        }
+
+        long published = publish(ring);
+        running.set(false);
+        for (Thread thread : threads)
+            thread.join();
+        ring.releaseLast();
+
+        System.out.printf("%d consumer(s), published %,d ticks at %,d/sec%n", consumers, published, RATE);
+        for (int i = 0; i < consumers; i++) {
+            Histogram h = histograms[i];
+            System.out.printf("  consumer %d one-way latency ns: p50 %,.0f, p99 %,.0f, p99.9 %,.0f, lost %,d%n",
+                    i,
+                    h.percentile(0.50),
+                    h.percentile(0.99),
+                    h.percentile(0.999),
+                    lost[i]);
+        }
+    }
+
+    /**
+     * Publishes ticks at {@link #RATE} per second for {@link #SECONDS} seconds.
+     *
+     * @return the number of ticks published
+     */
+    private static long publish(MarketDataRing ring) {
+        TriviallyCopyableMarketData md = new TriviallyCopyableMarketData();
+        long interval = 1_000_000_000L / RATE;
+        long start = System.nanoTime();
+        long end = start + SECONDS * 1_000_000_000L;
+        long next = start;
+        long count = 0;
+        while (next < end) {
+            // Busy wait rather than sleep, as sleeping is far less precise than the interval
+            while (System.nanoTime() < next) ;
+            md.bidPrice0(count);
+            // Stamp the intended time so a delayed publish counts towards the latency
+            md.time(next);
+            ring.publish(md);
+            count++;
+            next += interval;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,40 @@
+package blog.vanillajava.codegen;
+
+import net.openhft.chronicle.bytes.BytesIn;
+import net.openhft.chronicle.bytes.BytesOut;
+
+/**
+ * Reads and writes the primitive fields of an object at fixed offsets, in the style of a hand-written
+ * {@code DirectMarketData}, but generated by {@link DirectMarshallers} so the offsets can't drift from
+ * the fields.
+ *
+ * @param <T> the type of object marshalled.
+ */
+public interface DirectMarshaller<T> {
+
+    /**
+     * Writes the fields of {@code t} as a fixed length block.
+     *
+     * @param t     the object to write.
+     * @param bytes the destination to write to.
+     */
+    void writeMarshallable(T t, BytesOut<?> bytes);
+
+    /**
+     * Reads a fixed length block into the fields of {@code t}.
+     *
+     * @param t     the object to read into.
+     * @param bytes the source to read from.
+     */
+    void readMarshallable(T t, BytesIn<?> bytes);
+
+    /**
+     * @return the length of the block in bytes.
+     */
+    int length();
+
+    /**
+     * @return a description of the layout, the name, type and offset of each field.
+     */
+    String layout();
+}
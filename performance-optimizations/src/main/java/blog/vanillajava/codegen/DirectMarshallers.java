@@ -0,0 +1,252 @@
+package blog.vanillajava.codegen;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.compiler.CompilerUtils;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates a {@link DirectMarshaller} for a class with only primitive fields.
+ *
+ * <p>The fields are laid out in declaration order, superclass first, packed without padding, which
+ * for {@code MarketData} is the same layout as the hand-written {@code DirectMarketData}. Java source
+ * reading and writing each field at its offset is generated and compiled at runtime into the package of
+ * the class, so the fields only need to be package-private. A {@code BytesIn} or {@code BytesOut} which
+ * isn't a {@link Bytes} has no store to access by offset, so it is read or written field by field in the
+ * same layout instead.</p>
+ *
+ * <p>Before a marshaller is returned, its layout is validated by writing an object with a distinct value
+ * in every field and checking each field reads back, which catches overlapping or missing fields.</p>
+ */
+public final class DirectMarshallers {
+
+    private static final ClassValue<DirectMarshaller<?>> MARSHALLERS = new ClassValue<DirectMarshaller<?>>() {
+        @Override
+        protected DirectMarshaller<?> computeValue(Class<?> type) {
+            return generate(type);
+        }
+    };
+
+    private DirectMarshallers() {
+    }
+
+    /**
+     * Returns the marshaller for a class, generating it on first use.
+     *
+     * @param type the class to marshal.
+     * @param <T>  the type of the class.
+     * @return the marshaller.
+     * @throws IllegalArgumentException if the class has a field which isn't primitive or is private.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> DirectMarshaller<T> of(Class<T> type) {
+        return (DirectMarshaller<T>) MARSHALLERS.get(type);
+    }
+
+    /**
+     * Returns the instance fields to marshal in layout order, superclass first.
+     *
+     * @throws IllegalArgumentException if a field can't be marshalled.
+     */
+    static List<Field> fieldsOf(Class<?> type) {
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass())
+            hierarchy.add(0, c);
+        List<Field> fields = new ArrayList<>();
+        for (Class<?> c : hierarchy) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers))
+                    continue;
+                if (!field.getType().isPrimitive())
+                    throw new IllegalArgumentException(field + " is not a primitive");
+                if (Modifier.isPrivate(modifiers))
+                    throw new IllegalArgumentException(field + " is private");
+                fields.add(field);
+            }
+        }
+        if (fields.isEmpty())
+            throw new IllegalArgumentException(type + " has no fields to marshal");
+        return fields;
+    }
+
+    /**
+     * @return the size in bytes of a primitive type.
+     */
+    static int sizeOf(Class<?> type) {
+        if (type == long.class || type == double.class)
+            return 8;
+        if (type == int.class || type == float.class)
+            return 4;
+        if (type == short.class || type == char.class)
+            return 2;
+        return 1;
+    }
+
+    /**
+     * Returns a description of the layout of the fields, the name, type and offset of each.
+     *
+     * @param type the class to describe.
+     * @return the layout, e.g. {@code securityId:long@0,time:long@8,...}
+     */
+    public static String layoutOf(Class<?> type) {
+        StringBuilder sb = new StringBuilder();
+        int offset = 0;
+        for (Field field : fieldsOf(type)) {
+            if (sb.length() > 0)
+                sb.append(',');
+            sb.append(field.getName()).append(':').append(field.getType().getName()).append('@').append(offset);
+            offset += sizeOf(field.getType());
+        }
+        return sb.toString();
+    }
+
+    static DirectMarshaller<?> generate(Class<?> type) {
+        List<Field> fields = fieldsOf(type);
+        String packageName = type.getPackage().getName();
+        String simpleName = type.getName().substring(packageName.length() + 1).replace('$', '_') + "$$DirectMarshaller";
+        String typeName = type.getCanonicalName();
+
+        StringBuilder write = new StringBuilder();
+        StringBuilder read = new StringBuilder();
+        StringBuilder streamWrite = new StringBuilder();
+        StringBuilder streamRead = new StringBuilder();
+        int offset = 0;
+        for (Field field : fields) {
+            Class<?> ft = field.getType();
+            String name = field.getName();
+            String at = "position + " + offset;
+            if (ft == boolean.class) {
+                write.append("        bs.writeBoolean(").append(at).append(", t.").append(name).append(");\n");
+                read.append("        t.").append(name).append(" = bs.readBoolean(").append(at).append(");\n");
+                streamWrite.append("            bytes.writeBoolean(t.").append(name).append(");\n");
+                streamRead.append("            t.").append(name).append(" = bytes.readBoolean();\n");
+            } else if (ft == char.class) {
+                write.append("        bs.writeShort(").append(at).append(", (short) t.").append(name).append(");\n");
+                read.append("        t.").append(name).append(" = (char) bs.readShort(").append(at).append(");\n");
+                streamWrite.append("            bytes.writeShort((short) t.").append(name).append(");\n");
+                streamRead.append("            t.").append(name).append(" = (char) bytes.readShort();\n");
+            } else {
+                String method = Character.toUpperCase(ft.getName().charAt(0)) + ft.getName().substring(1);
+                write.append("        bs.write").append(method).append('(').append(at).append(", t.").append(name).append(");\n");
+                read.append("        t.").append(name).append(" = bs.read").append(method).append('(').append(at).append(");\n");
+                streamWrite.append("            bytes.write").append(method).append("(t.").append(name).append(");\n");
+                streamRead.append("            t.").append(name).append(" = bytes.read").append(method).append("();\n");
+            }
+            offset += sizeOf(ft);
+        }
+        int length = offset;
+
+        String source = "package " + packageName + ";\n" +
+                "\n" +
+                "import net.openhft.chronicle.bytes.*;\n" +
+                "\n" +
+                "public final class " + simpleName + " implements " + DirectMarshaller.class.getName() + "<" + typeName + "> {\n" +
+                "    public void writeMarshallable(" + typeName + " t, BytesOut<?> bytes) {\n" +
+                "        if (!(bytes instanceof Bytes)) {\n" +
+                streamWrite +
+                "            return;\n" +
+                "        }\n" +
+                "        long position = bytes.writePosition();\n" +
+                "        bytes.writeSkip(" + length + ");\n" +
+                "        BytesStore<?, ?> bs = ((Bytes<?>) bytes).bytesStore();\n" +
+                write +
+                "    }\n" +
+                "\n" +
+                "    public void readMarshallable(" + typeName + " t, BytesIn<?> bytes) {\n" +
+                "        if (!(bytes instanceof Bytes)) {\n" +
+                streamRead +
+                "            return;\n" +
+                "        }\n" +
+                "        long position = bytes.readPosition();\n" +
+                "        bytes.readSkip(" + length + ");\n" +
+                "        BytesStore<?, ?> bs = ((Bytes<?>) bytes).bytesStore();\n" +
+                read +
+                "    }\n" +
+                "\n" +
+                "    public int length() {\n" +
+                "        return " + length + ";\n" +
+                "    }\n" +
+                "\n" +
+                "    public String layout() {\n" +
+                "        return \"" + layoutOf(type) + "\";\n" +
+                "    }\n" +
+                "}\n";
+
+        DirectMarshaller<?> marshaller;
+        try {
+            Class<?> generated = CompilerUtils.CACHED_COMPILER.loadFromJava(type.getClassLoader(), packageName + "." + simpleName, source);
+            marshaller = (DirectMarshaller<?>) generated.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to generate a DirectMarshaller for " + type + "\n" + source, e);
+        }
+        validate(type, fields, marshaller);
+        return marshaller;
+    }
+
+    /**
+     * Checks each field round trips on its own by writing an object with a distinct value in every field.
+     * Classes without a no-argument constructor are not checked.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static void validate(Class<?> type, List<Field> fields, DirectMarshaller marshaller) {
+        if (Modifier.isAbstract(type.getModifiers()))
+            return;
+        Object in, out;
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            in = constructor.newInstance();
+            out = constructor.newInstance();
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                field.setAccessible(true);
+                field.set(in, sampleValue(field.getType(), i + 1));
+            }
+        } catch (NoSuchMethodException e) {
+            return;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to validate " + type, e);
+        }
+
+        Bytes<?> bytes = Bytes.allocateElasticOnHeap(marshaller.length());
+        marshaller.writeMarshallable(in, bytes);
+        if (bytes.writePosition() != marshaller.length())
+            throw new IllegalStateException("Wrote " + bytes.writePosition() + " bytes but the length is " + marshaller.length());
+        marshaller.readMarshallable(out, bytes);
+        try {
+            for (Field field : fields)
+                if (!field.get(in).equals(field.get(out)))
+                    throw new IllegalStateException("Layout of " + type.getName() + "." + field.getName() +
+                            " does not round trip: " + field.get(in) + " != " + field.get(out));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Unable to validate " + type, e);
+        }
+    }
+
+    /**
+     * @return a value for a field, distinct for each {@code n}, with every byte of the field non-zero.
+     */
+    static Object sampleValue(Class<?> type, int n) {
+        long bits = 0x0101010101010101L * (n & 0x7F);
+        if (type == boolean.class)
+            return (n & 1) != 0;
+        if (type == byte.class)
+            return (byte) bits;
+        if (type == short.class)
+            return (short) bits;
+        if (type == char.class)
+            return (char) bits;
+        if (type == int.class)
+            return (int) bits;
+        if (type == float.class)
+            return Float.intBitsToFloat((int) bits);
+        if (type == double.class)
+            return Double.longBitsToDouble(bits);
+        return bits;
+    }
+}
@@ -0,0 +1,65 @@
+package blog.vanillajava.codegen;
+
+import net.openhft.chronicle.bytes.Bytes;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Benchmarks the generated {@link DirectMarshaller} of each message class, one result per class.
+ *
+ * <p>Add message types to the {@code type} parameter, or override it on the command line with
+ * {@code -p type=com.example.MyMessage,...}. See {@code BenchmarkRunner} for the JVM options
+ * required on Java 17+.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Fork(value = 1, warmups = 1)
+@Warmup(iterations = 5, time = 200, timeUnit = MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = MILLISECONDS)
+public class GeneratedMarshallerBenchmark {
+
+    @Param({"blog.vanillajava.triviallycopyable.GeneratedMarketData"})
+    String type;
+
+    private DirectMarshaller<Object> marshaller;
+    private Object message;
+    private Object message2;
+    private Bytes<Void> bytes;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() throws ReflectiveOperationException {
+        Class<Object> clazz = (Class<Object>) Class.forName(type);
+        marshaller = DirectMarshallers.of(clazz);
+        message = clazz.getDeclaredConstructor().newInstance();
+        message2 = clazz.getDeclaredConstructor().newInstance();
+        bytes = Bytes.allocateDirect(marshaller.length());
+    }
+
+    @TearDown
+    public void tearDown() {
+        bytes.releaseLast();
+    }
+
+    @Benchmark
+    public void writeRead() {
+        bytes.clear();
+        marshaller.writeMarshallable(message, bytes);
+        marshaller.readMarshallable(message2, bytes);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + GeneratedMarshallerBenchmark.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,212 @@
+package blog.vanillajava.coldcode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Measures how the latency of a task changes as the JIT warms it up, and how it degrades again after the
+ * thread has been idle, as {@link FastAndSlowMain} does for one task.
+ *
+ * <p>Three things are measured:</p>
+ * <ul>
+ *   <li>the first call, which includes class loading and interpreting,</li>
+ *   <li>the warm-up curve, every call for {@link #warmupIterations(int)} calls,</li>
+ *   <li>the latency after sleeping for each of {@link #sleepsMs(int...)}, averaged over
+ *   {@link #runsPerSleep(IntUnaryOperator)} calls.</li>
+ * </ul>
+ *
+ * <p>A summary is printed, and if {@link #csvDirectory(File)} is set, every sample is written to
+ * {@code <name>-samples.csv} with the total JIT compilation time so far. With
+ * {@link #recordCompilations(boolean)} each JIT compilation is recorded with JFR and written to
+ * {@code <name>-compilations.csv}, on the same time axis, so a step in the warm-up curve can be matched to
+ * the methods compiled. Characters in the name other than letters, digits, {@code _} and {@code -} are
+ * replaced with {@code _} in the file names.</p>
+ */
+public class ColdCodeHarness {
+
+    /**
+     * How the harness waits between calls after warming up.
+     */
+    @FunctionalInterface
+    public interface Idler {
+        /**
+         * @param ms the time to wait in milliseconds.
+         */
+        void idle(int ms) throws InterruptedException;
+    }
+
+    private final String name;
+    private final Runnable task;
+    private int warmupIterations = 100_000;
+    private int[] checkpoints = {0, 1, 10, 100, 1_000, 10_000, 20_000};
+    private int[] sleepsMs = {0, 1, 2, 5, 10, 20, 50, 100};
+    private IntUnaryOperator runsPerSleep = sleepMs -> 100;
+    private Idler idler = Thread::sleep;
+    private File csvDirectory;
+    private boolean recordCompilations;
+
+    private final CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+    private final boolean compilationTimed = compilation != null && compilation.isCompilationTimeMonitoringSupported();
+    private long originNanos;
+
+    /**
+     * @param name a name for the task, used in the output and the CSV file names.
+     * @param task the task to time.
+     */
+    public ColdCodeHarness(String name, Runnable task) {
+        this.name = name;
+        this.task = task;
+    }
+
+    /**
+     * @param warmupIterations the number of calls timed individually after the first.
+     * @return this
+     */
+    public ColdCodeHarness warmupIterations(int warmupIterations) {
+        this.warmupIterations = warmupIterations;
+        return this;
+    }
+
+    /**
+     * @param checkpoints the warm-up iterations to print in the summary.
+     * @return this
+     */
+    public ColdCodeHarness checkpoints(int... checkpoints) {
+        this.checkpoints = checkpoints.clone();
+        Arrays.sort(this.checkpoints);
+        return this;
+    }
+
+    /**
+     * @param sleepsMs the idle times to measure after, in milliseconds.
+     * @return this
+     */
+    public ColdCodeHarness sleepsMs(int... sleepsMs) {
+        this.sleepsMs = sleepsMs.clone();
+        return this;
+    }
+
+    /**
+     * @param runsPerSleep the number of sleeps and calls averaged for each idle time.
+     * @return this
+     */
+    public ColdCodeHarness runsPerSleep(int runsPerSleep) {
+        return runsPerSleep(sleepMs -> runsPerSleep);
+    }
+
+    /**
+     * @param runsPerSleep the number of sleeps and calls averaged, given the idle time in milliseconds, e.g.
+     *                     more runs for the short sleeps, which take less time each.
+     * @return this
+     */
+    public ColdCodeHarness runsPerSleep(IntUnaryOperator runsPerSleep) {
+        this.runsPerSleep = runsPerSleep;
+        return this;
+    }
+
+    /**
+     * @param idler how to wait for each of {@link #sleepsMs(int...)}, {@link Thread#sleep(long)} by default.
+     * @return this
+     */
+    public ColdCodeHarness idler(Idler idler) {
+        this.idler = idler;
+        return this;
+    }
+
+    /**
+     * @param csvDirectory the directory to write CSV files to, or {@code null} for none.
+     * @return this
+     */
+    public ColdCodeHarness csvDirectory(File csvDirectory) {
+        this.csvDirectory = csvDirectory;
+        return this;
+    }
+
+    /**
+     * @param recordCompilations whether to record JIT compilations with JFR; requires {@link #csvDirectory(File)}.
+     * @return this
+     */
+    public ColdCodeHarness recordCompilations(boolean recordCompilations) {
+        this.recordCompilations = recordCompilations;
+        return this;
+    }
+
+    /**
+     * Runs the task and prints a summary, writing CSV files if configured.
+     *
+     * @throws IOException          if a CSV file can't be written.
+     * @throws InterruptedException if interrupted while sleeping.
+     */
+    public void run() throws IOException, InterruptedException {
+        CompilationRecorder recorder = recordCompilations && csvDirectory != null ? new CompilationRecorder(false) : null;
+        originNanos = System.nanoTime();
+        Instant origin = Instant.now();
+        if (recorder != null)
+            recorder.start(origin);
+
+        try (PrintWriter samples = csvDirectory == null ? null : new PrintWriter(csvFile("samples"))) {
+            if (samples != null)
+                samples.println("phase,iteration,sleepMs,startMs,latencyNs,jitMs");
+            warmUp(samples);
+            afterIdle(samples);
+        } finally {
+            if (recorder != null) {
+                try (PrintWriter out = new PrintWriter(csvFile("compilations"))) {
+                    recorder.stopAndWrite(out);
+                } finally {
+                    recorder.close();
+                }
+            }
+        }
+    }
+
+    private File csvFile(String kind) {
+        // the name can be a description, e.g. "serialise/deserialise GregorianCalendar"
+        return new File(csvDirectory, name.replaceAll("[^A-Za-z0-9_-]+", "_") + "-" + kind + ".csv");
+    }
+
+    private void warmUp(PrintWriter samples) {
+        // the first call is iteration 0
+        for (int i = 0; i <= warmupIterations; i++) {
+            long start = System.nanoTime();
+            task.run();
+            long time = System.nanoTime() - start;
+            if (samples != null)
+                sample(samples, i == 0 ? "first" : "warmup", i, 0, start, time);
+            if (i == warmupIterations || Arrays.binarySearch(checkpoints, i) >= 0)
+                System.out.printf("%,d: Took %,d us to %s%n", i, time / 1000, name);
+        }
+    }
+
+    private void afterIdle(PrintWriter samples) throws InterruptedException {
+        for (int sleepMs : sleepsMs) {
+            int runs = runsPerSleep.applyAsInt(sleepMs);
+            long total = 0, worst = 0;
+            for (int j = 0; j < runs; j++) {
+                idler.idle(sleepMs);
+                long start = System.nanoTime();
+                task.run();
+                long time = System.nanoTime() - start;
+                total += time;
+                worst = Math.max(worst, time);
+                if (samples != null)
+                    sample(samples, "idle", j, sleepMs, start, time);
+            }
+            System.out.printf("After sleep %d ms: Took %,d us to %s, worst %,d us%n",
+                    sleepMs, total / runs / 1000, name, worst / 1000);
+        }
+    }
+
+    private void sample(PrintWriter samples, String phase, int iteration, int sleepMs, long start, long time) {
+        samples.printf(Locale.ROOT, "%s,%d,%d,%.3f,%d,%d%n",
+                phase, iteration, sleepMs, (start - originNanos) / 1e6, time,
+                compilationTimed ? compilation.getTotalCompilationTime() : -1);
+    }
+}
@@ -0,0 +1,132 @@
+package blog.vanillajava.coldcode;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedMethod;
+import jdk.jfr.consumer.RecordedObject;
+import jdk.jfr.consumer.RecordingFile;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Records every JIT compilation with a JFR {@code jdk.Compilation} event, and writes them as CSV.
+ *
+ * <p>This is a separate class so a JVM without JFR only needs it when compilations are recorded.</p>
+ */
+class CompilationRecorder implements AutoCloseable {
+
+    private static final String COMPILATION = "jdk.Compilation";
+    private static final String INLINING = "jdk.CompilerInlining";
+
+    private final Recording recording = new Recording();
+    private final boolean inlining;
+    private Instant origin;
+
+    /**
+     * @param inlining whether to also record which methods are inlined into each compilation, for
+     *                 {@link #compiledMethods(int)}.
+     */
+    CompilationRecorder(boolean inlining) {
+        this.inlining = inlining;
+    }
+
+    /**
+     * Starts recording.
+     *
+     * @param origin the time the other CSV columns are measured from.
+     */
+    void start(Instant origin) {
+        this.origin = origin;
+        recording.enable(COMPILATION).withThreshold(Duration.ZERO);
+        if (inlining)
+            recording.enable(INLINING);
+        recording.start();
+    }
+
+    /**
+     * Stops recording and writes one row per compilation to {@code out}.
+     */
+    void stopAndWrite(PrintWriter out) throws IOException {
+        recording.stop();
+        Path file = Files.createTempFile("compilations", ".jfr");
+        try {
+            recording.dump(file);
+            out.println("startMs,durationUs,level,osr,method");
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (!COMPILATION.equals(event.getEventType().getName()))
+                    continue;
+                RecordedMethod method = event.getValue("method");
+                out.printf(Locale.ROOT, "%.3f,%d,%d,%b,%s.%s%n",
+                        Duration.between(origin, event.getStartTime()).toNanos() / 1e6,
+                        event.getDuration().toNanos() / 1000,
+                        event.getInt("compileLevel"),
+                        event.getBoolean("isOsr"),
+                        method.getType().getName(),
+                        method.getName());
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Reads the compilations so far, without stopping.
+     *
+     * @param minLevel the lowest tier to include, e.g. 4 for C2.
+     * @return the {@code type.method} names of the methods compiled at {@code minLevel} or above, either on
+     * their own or, if recording inlining, inlined into another method.
+     */
+    Set<String> compiledMethods(int minLevel) throws IOException {
+        Path file = Files.createTempFile("compilations", ".jfr");
+        try {
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            Set<String> compiled = new HashSet<>();
+            Map<Integer, Integer> levels = new HashMap<>();
+            for (RecordedEvent event : events) {
+                if (!COMPILATION.equals(event.getEventType().getName()) || !succeeded(event))
+                    continue;
+                int level = event.getInt("compileLevel");
+                levels.put(event.getInt("compileId"), level);
+                if (level >= minLevel) {
+                    RecordedMethod method = event.getValue("method");
+                    compiled.add(method.getType().getName() + "." + method.getName());
+                }
+            }
+            for (RecordedEvent event : events) {
+                if (!INLINING.equals(event.getEventType().getName()) || !event.getBoolean("succeeded"))
+                    continue;
+                Integer level = levels.get(event.getInt("compileId"));
+                if (level == null || level < minLevel)
+                    continue;
+                // the callee's type is in the internal form, e.g. java/lang/String
+                RecordedObject callee = event.getValue("callee");
+                compiled.add(callee.getString("type").replace('/', '.') + "." + callee.getString("name"));
+            }
+            return compiled;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // the field was misspelt "succeded" in older JDKs
+    private static boolean succeeded(RecordedEvent event) {
+        return event.hasField("succeeded") ? event.getBoolean("succeeded") : event.getBoolean("succeded");
+    }
+
+    @Override
+    public void close() {
+        recording.close();
+    }
+}
@@ -2,9 +2,9 @@ package blog.vanillajava.coldcode;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.util.Arrays;
 import java.util.GregorianCalendar;
 
 /* Windows 10, i7-10710U, Azul 21.0.2
@@ -63,33 +63,24 @@ After sleep 20 ms: Took 44 us to serialise/deserialise GregorianCalendar
 After sleep 50 ms: Took 47 us to serialise/deserialise GregorianCalendar
 After sleep 100 ms: Took 49 us to serialise/deserialise GregorianCalendar
  */
+/**
+ * Times serialising and deserialising a {@link GregorianCalendar} as it warms up, and after sleeping,
+ * with a {@link ColdCodeHarness}.
+ *
+ * <p>{@code -Dcsv=<dir>} writes every sample to CSV, and {@code -Dcompilations=true} also records the JIT
+ * compilations with JFR.</p>
+ */
 public class FastAndSlowMain {
     public static void main(String[] args) throws Exception {
-        // warm up the code
-        int[] display = {0, 1, 10, 100, 1000, 10000, 20000, 100001};
-        for (int i = 0; i <= display[display.length - 1]; i++) {
-            long start = System.nanoTime();
-            doTask();
-            long time = System.nanoTime() - start;
-            if (Arrays.binarySearch(display, i) >= 0)
-                System.out.printf("%,d: Took %,d us to serialise/deserialise " +
-                        "GregorianCalendar%n", i, time / 1000);
-        }
-
-        // run immediately after the previous section where the code has warmed up.
-        for (int i : new int[]{0, 1, 2, 5, 10, 20, 50, 100}) {
-            int runs = i < 10 ? 1000 : 100;
-            long total = 0;
-            for (int j = 0; j < runs; j++) {
-                Thread.sleep(i);
-                long start = System.nanoTime();
-                doTask();
-                long time = System.nanoTime() - start;
-                total += time;
-            }
-            System.out.printf("After sleep %d ms: Took %,d us to serialise/deserialise " +
-                    "GregorianCalendar%n", i, total / runs / 1000);
-        }
+        String csv = System.getProperty("csv");
+        new ColdCodeHarness("serialise/deserialise GregorianCalendar", FastAndSlowMain::doTask)
+                .warmupIterations(100_001)
+                .checkpoints(0, 1, 10, 100, 1000, 10000, 20000)
+                .sleepsMs(0, 1, 2, 5, 10, 20, 50, 100)
+                .runsPerSleep(sleepMs -> sleepMs < 10 ? 1000 : 100)
+                .csvDirectory(csv == null ? null : new File(csv))
+                .recordCompilations(Boolean.getBoolean("compilations"))
+                .run();
     }
 
     // Serialization of the GregorianCalendar was chosen as both as relatively heavy weight but can be used in a short section of code.
@@ -0,0 +1,146 @@
+package blog.vanillajava.coldcode;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps latency-critical code paths warm while they are idle, by running registered tasks with synthetic
+ * inputs, using no more than a budgeted share of the CPU.
+ *
+ * <p>{@link #pause(long)} replaces a sleep on the latency-critical thread. While pausing, it runs the tasks
+ * in turn on the same thread, so on the same core, keeping its caches, branch predictors and clock speed
+ * up. After a task takes {@code t}, it parks long enough that the tasks use at most
+ * {@link #budgetPercent(double)} of the pause, e.g. {@code 9 * t} for 10%.</p>
+ *
+ * <p>{@link #start()} runs the tasks on a background thread instead, under the same budget, for code whose
+ * idle time isn't spent in one place. A background thread is usually on another core, so this keeps the
+ * JIT's compiled code and profile in use, but not the latency-critical core's caches.</p>
+ *
+ * <p>The tasks must be safe to run at any time, and, with {@link #start()}, concurrently with the real path.
+ * Use either {@code pause} from one thread, or {@code start}, not both.</p>
+ */
+public class KeepWarm implements AutoCloseable {
+
+    private final CopyOnWriteArrayList<Runnable> tasks = new CopyOnWriteArrayList<>();
+    private volatile double budgetPercent = 10;
+    private volatile boolean running;
+    private Thread background;
+    private int next;
+    private long warmNanos;
+
+    /**
+     * @param task a task to run while idle, e.g. the real path with a synthetic input.
+     * @return this
+     */
+    public KeepWarm register(Runnable task) {
+        tasks.add(task);
+        return this;
+    }
+
+    /**
+     * @param budgetPercent the most CPU to use running tasks, as a percentage of the time idle, e.g. 10.
+     * @return this
+     */
+    public KeepWarm budgetPercent(double budgetPercent) {
+        if (!(budgetPercent > 0 && budgetPercent <= 100))
+            throw new IllegalArgumentException("budgetPercent must be in (0, 100]: " + budgetPercent);
+        this.budgetPercent = budgetPercent;
+        return this;
+    }
+
+    /**
+     * Waits for {@code nanos}, running the tasks within the budget in the meantime.
+     *
+     * <p>The last task run can end after the deadline, by up to the time the task takes.</p>
+     *
+     * @param nanos the time to wait.
+     */
+    public void pause(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        runUntil(deadline);
+    }
+
+    /**
+     * Waits for {@code ms} milliseconds; see {@link #pause(long)}.
+     */
+    public void pauseMillis(int ms) {
+        pause(TimeUnit.MILLISECONDS.toNanos(ms));
+    }
+
+    private void runUntil(long deadline) {
+        long now;
+        while ((now = System.nanoTime()) < deadline) {
+            long time = runNext();
+            if (time < 0) {
+                LockSupport.parkNanos(deadline - now);
+                continue;
+            }
+            // idle long enough that time / (time + idle) <= budget
+            long idle = (long) (time * (100 - budgetPercent) / budgetPercent);
+            long end = Math.min(now + time + idle, deadline);
+            long remaining;
+            while ((remaining = end - System.nanoTime()) > 0)
+                LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * @return how long the next task took, or -1 if there are none.
+     */
+    private long runNext() {
+        int size = tasks.size();
+        if (size == 0)
+            return -1;
+        if (next >= size)
+            next = 0;
+        Runnable task = tasks.get(next++);
+        long start = System.nanoTime();
+        task.run();
+        long time = System.nanoTime() - start;
+        warmNanos += time;
+        return time;
+    }
+
+    /**
+     * @return the total time spent running tasks by {@link #pause(long)}, or by the background thread once it
+     * has stopped.
+     */
+    public long warmNanos() {
+        return warmNanos;
+    }
+
+    /**
+     * Starts running the tasks on a background daemon thread, within the budget, until {@link #close()}.
+     *
+     * @return this
+     */
+    public synchronized KeepWarm start() {
+        if (background != null)
+            throw new IllegalStateException("Already started");
+        running = true;
+        background = new Thread(() -> {
+            while (running)
+                runUntil(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(10));
+        }, "keep-warm");
+        background.setDaemon(true);
+        background.start();
+        return this;
+    }
+
+    /**
+     * Stops the background thread, if started.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (background == null)
+            return;
+        try {
+            background.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        background = null;
+    }
+}
@@ -0,0 +1,74 @@
+package blog.vanillajava.coldcode;
+
+/* Linux, 1 CPU, OpenJDK 17.0.9
+# Thread.sleep
+100,000: Took 26 us to serialise/deserialise GregorianCalendar (sleep)
+After sleep 0 ms: Took 40 us to serialise/deserialise GregorianCalendar (sleep), worst 122 us
+After sleep 1 ms: Took 111 us to serialise/deserialise GregorianCalendar (sleep), worst 228 us
+After sleep 2 ms: Took 109 us to serialise/deserialise GregorianCalendar (sleep), worst 569 us
+After sleep 5 ms: Took 112 us to serialise/deserialise GregorianCalendar (sleep), worst 182 us
+After sleep 10 ms: Took 133 us to serialise/deserialise GregorianCalendar (sleep), worst 863 us
+After sleep 20 ms: Took 182 us to serialise/deserialise GregorianCalendar (sleep), worst 663 us
+After sleep 50 ms: Took 221 us to serialise/deserialise GregorianCalendar (sleep), worst 300 us
+After sleep 100 ms: Took 222 us to serialise/deserialise GregorianCalendar (sleep), worst 369 us
+
+# KeepWarm.pause, same thread, budget 10%
+100,000: Took 26 us to serialise/deserialise GregorianCalendar (pause)
+After sleep 0 ms: Took 34 us to serialise/deserialise GregorianCalendar (pause), worst 334 us
+After sleep 1 ms: Took 64 us to serialise/deserialise GregorianCalendar (pause), worst 198 us
+After sleep 2 ms: Took 69 us to serialise/deserialise GregorianCalendar (pause), worst 308 us
+After sleep 5 ms: Took 54 us to serialise/deserialise GregorianCalendar (pause), worst 171 us
+After sleep 10 ms: Took 64 us to serialise/deserialise GregorianCalendar (pause), worst 161 us
+After sleep 20 ms: Took 72 us to serialise/deserialise GregorianCalendar (pause), worst 351 us
+After sleep 50 ms: Took 59 us to serialise/deserialise GregorianCalendar (pause), worst 209 us
+After sleep 100 ms: Took 65 us to serialise/deserialise GregorianCalendar (pause), worst 317 us
+Spent 1,603 ms keeping warm
+
+# KeepWarm.start, background thread, budget 10%
+100,000: Took 30 us to serialise/deserialise GregorianCalendar (background)
+After sleep 0 ms: Took 40 us to serialise/deserialise GregorianCalendar (background), worst 204 us
+After sleep 1 ms: Took 62 us to serialise/deserialise GregorianCalendar (background), worst 166 us
+After sleep 2 ms: Took 59 us to serialise/deserialise GregorianCalendar (background), worst 125 us
+After sleep 5 ms: Took 66 us to serialise/deserialise GregorianCalendar (background), worst 192 us
+After sleep 10 ms: Took 64 us to serialise/deserialise GregorianCalendar (background), worst 165 us
+After sleep 20 ms: Took 66 us to serialise/deserialise GregorianCalendar (background), worst 258 us
+After sleep 50 ms: Took 79 us to serialise/deserialise GregorianCalendar (background), worst 202 us
+After sleep 100 ms: Took 83 us to serialise/deserialise GregorianCalendar (background), worst 516 us
+Spent 2,073 ms keeping warm
+ */
+/**
+ * Compares the latency of {@link FastAndSlowMain#doTask()} after sleeping, as {@link FastAndSlowMain} measures
+ * it, with keeping it warm while idle with a {@link KeepWarm}, on the same thread and on a background thread.
+ *
+ * <p>The budget is set with {@code -Dbudget}, as a percentage of CPU, default 10.</p>
+ */
+public class KeepWarmMain {
+    public static void main(String[] args) throws Exception {
+        double budget = Double.parseDouble(System.getProperty("budget", "10"));
+
+        System.out.println("# Thread.sleep");
+        harness("sleep").run();
+
+        try (KeepWarm keepWarm = new KeepWarm().register(FastAndSlowMain::doTask).budgetPercent(budget)) {
+            System.out.printf("%n# KeepWarm.pause, same thread, budget %.0f%%%n", budget);
+            harness("pause").idler(keepWarm::pauseMillis).run();
+            System.out.printf("Spent %,d ms keeping warm%n", keepWarm.warmNanos() / 1_000_000);
+        }
+
+        KeepWarm background = new KeepWarm().register(FastAndSlowMain::doTask).budgetPercent(budget).start();
+        try {
+            System.out.printf("%n# KeepWarm.start, background thread, budget %.0f%%%n", budget);
+            harness("background").run();
+        } finally {
+            background.close();
+        }
+        // only complete once the background thread has stopped
+        System.out.printf("Spent %,d ms keeping warm%n", background.warmNanos() / 1_000_000);
+    }
+
+    private static ColdCodeHarness harness(String variant) {
+        return new ColdCodeHarness("serialise/deserialise GregorianCalendar (" + variant + ")", FastAndSlowMain::doTask)
+                .checkpoints()
+                .sleepsMs(0, 1, 2, 5, 10, 20, 50, 100);
+    }
+}
@@ -0,0 +1,178 @@
+package blog.vanillajava.coldcode;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Warms up a service at startup by replaying representative requests until the JIT has compiled the
+ * methods which matter, then signals it is ready.
+ *
+ * <p>Compilations are observed with JFR {@code jdk.Compilation} and {@code jdk.CompilerInlining} events, read
+ * every {@link #pollMs(int)}, so a listed method counts as compiled when compiled on its own, or inlined
+ * into another method, at {@link #minLevel(int)} or above. A method is listed as {@code Class.method} or
+ * {@code package.Class.method}.</p>
+ *
+ * <p>If the methods aren't all compiled within {@link #timeoutMs(long)}, the driver signals ready anyway,
+ * as a service which is slow for a while is better than one which never starts.</p>
+ */
+public class WarmupDriver {
+
+    private final List<Runnable> requests = new ArrayList<>();
+    private final Set<String> methods = new LinkedHashSet<>();
+    private final CountDownLatch ready = new CountDownLatch(1);
+    private int minLevel = 4;
+    private int pollMs = 50;
+    private long timeoutMs = 30_000;
+
+    private long iterations;
+    private Set<String> pending = new LinkedHashSet<>();
+
+    /**
+     * @param request a representative request, replayed in turn with the others.
+     * @return this
+     */
+    public WarmupDriver request(Runnable request) {
+        requests.add(request);
+        return this;
+    }
+
+    /**
+     * @param methods the methods which must be compiled before the service is ready.
+     * @return this
+     */
+    public WarmupDriver awaitCompiled(String... methods) {
+        this.methods.addAll(Arrays.asList(methods));
+        return this;
+    }
+
+    /**
+     * @param minLevel the lowest tier which counts as compiled, 4 for C2 by default.
+     * @return this
+     */
+    public WarmupDriver minLevel(int minLevel) {
+        this.minLevel = minLevel;
+        return this;
+    }
+
+    /**
+     * @param pollMs how often to check which methods have been compiled.
+     * @return this
+     */
+    public WarmupDriver pollMs(int pollMs) {
+        this.pollMs = pollMs;
+        return this;
+    }
+
+    /**
+     * @param timeoutMs the longest to warm up for.
+     * @return this
+     */
+    public WarmupDriver timeoutMs(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+        return this;
+    }
+
+    /**
+     * Replays the requests on this thread until the methods are compiled or the timeout, then signals ready.
+     *
+     * <p>Reading the JFR recording takes tens of milliseconds, so it is polled on another thread, and the
+     * requests are replayed without pausing.</p>
+     *
+     * @return whether every method was compiled.
+     * @throws IOException if the JFR recording can't be read.
+     */
+    public boolean run() throws IOException {
+        if (requests.isEmpty())
+            throw new IllegalStateException("No requests to replay");
+        pending = Collections.synchronizedSet(new LinkedHashSet<>(methods));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        AtomicBoolean done = new AtomicBoolean(pending.isEmpty());
+        AtomicReference<IOException> error = new AtomicReference<>();
+        try (CompilationRecorder recorder = new CompilationRecorder(true)) {
+            recorder.start(Instant.now());
+            Thread poller = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        Thread.sleep(pollMs);
+                        removeCompiled(recorder.compiledMethods(minLevel));
+                        if (pending.isEmpty() || System.nanoTime() >= deadline)
+                            done.set(true);
+                    }
+                } catch (IOException e) {
+                    error.set(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.set(true);
+                }
+            }, "warmup-poller");
+            poller.setDaemon(true);
+            poller.start();
+
+            while (!done.get()) {
+                for (Runnable request : requests)
+                    request.run();
+                iterations++;
+            }
+            poller.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for the poller", e);
+        } finally {
+            ready.countDown();
+        }
+        if (error.get() != null)
+            throw error.get();
+        return pending.isEmpty();
+    }
+
+    private void removeCompiled(Set<String> compiled) {
+        // removeIf on a synchronized set holds its lock
+        pending.removeIf(method -> {
+            for (String name : compiled)
+                if (name.equals(method) || name.endsWith("." + method))
+                    return true;
+            return false;
+        });
+    }
+
+    /**
+     * @return the number of times every request was replayed.
+     */
+    public long iterations() {
+        return iterations;
+    }
+
+    /**
+     * @return the listed methods not yet compiled.
+     */
+    public Set<String> pending() {
+        return new LinkedHashSet<>(pending);
+    }
+
+    /**
+     * @return whether warming up has finished.
+     */
+    public boolean isReady() {
+        return ready.getCount() == 0;
+    }
+
+    /**
+     * Waits for warming up to finish, e.g. from a health check while {@link #run()} is called on another thread.
+     *
+     * @return whether it finished within the timeout.
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return ready.await(timeout, unit);
+    }
+}
@@ -0,0 +1,90 @@
+package blog.vanillajava.coldcode;
+
+import blog.vanillajava.decimal.MyBenchmark;
+import blog.vanillajava.triviallycopyable.BenchmarkRunner;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Measures the time from JVM start until requests run at their steady-state speed, with and without a
+ * {@link WarmupDriver} replaying them first.
+ *
+ * <p>The requests are {@link BenchmarkRunner}'s marshalling calls and {@link MyBenchmark}'s mid-price loops.
+ * After any warm-up they are served in batches, and the steady state is the median of the last
+ * {@value #STEADY_BATCHES} batches. The time to steady state is the JVM uptime when a batch is first within
+ * 20% of it.</p>
+ *
+ * <p>Run with {@code -Dwarmup=false} and {@code -Dwarmup=true}, each with and without class data sharing,
+ * e.g. after creating an AppCDS archive with {@code -XX:ArchiveClassesAtExit=warmup.jsa}, run with
+ * {@code -XX:SharedArchiveFile=warmup.jsa}. Whether sharing is in use is printed.</p>
+ */
+public class WarmupMain {
+
+    static final int BATCHES = Integer.getInteger("batches", 2_000);
+    static final int ROUNDS_PER_BATCH = Integer.getInteger("roundsPerBatch", 100);
+    static final int STEADY_BATCHES = 200;
+
+    public static void main(String[] args) throws Exception {
+        long mainUptime = ManagementFactory.getRuntimeMXBean().getUptime();
+        boolean warmup = Boolean.parseBoolean(System.getProperty("warmup", "true"));
+
+        BenchmarkRunner runner = new BenchmarkRunner();
+        MyBenchmark midPrice = new MyBenchmark();
+        Runnable[] requests = {
+                runner::explicitWriteRead,
+                runner::directWriteRead,
+                runner::trivialWriteRead,
+                midPrice::doubleMidPrice,
+                midPrice::decimal6fMidPrice
+        };
+
+        System.out.printf("%s, warmup %b, main started at %,d ms%n",
+                System.getProperty("java.vm.info"), warmup, mainUptime);
+
+        if (warmup) {
+            WarmupDriver driver = new WarmupDriver()
+                    .awaitCompiled(
+                            "ExplicitMarketData.writeMarshallable",
+                            "ExplicitMarketData.readMarshallable",
+                            "DirectMarketData.writeMarshallable",
+                            "DirectMarketData.readMarshallable",
+                            "TriviallyCopyableMarketData.writeMarshallable",
+                            "TriviallyCopyableMarketData.readMarshallable",
+                            "MyBenchmark.doubleMidPrice",
+                            "MyBenchmark.decimal6fMidPrice");
+            for (Runnable request : requests)
+                driver.request(request);
+            boolean compiled = driver.run();
+            System.out.printf("Ready at %,d ms after %,d warm-up rounds, %s%n",
+                    ManagementFactory.getRuntimeMXBean().getUptime(), driver.iterations(),
+                    compiled ? "all methods compiled" : "timed out waiting for " + driver.pending());
+        }
+
+        long[] batchNanos = new long[BATCHES];
+        long[] batchUptime = new long[BATCHES];
+        long firstRound = 0;
+        for (int b = 0; b < BATCHES; b++) {
+            long start = System.nanoTime();
+            for (int r = 0; r < ROUNDS_PER_BATCH; r++) {
+                for (Runnable request : requests)
+                    request.run();
+                if (b == 0 && r == 0)
+                    firstRound = System.nanoTime() - start;
+            }
+            batchNanos[b] = (System.nanoTime() - start) / ROUNDS_PER_BATCH;
+            batchUptime[b] = ManagementFactory.getRuntimeMXBean().getUptime();
+        }
+
+        long[] last = Arrays.copyOfRange(batchNanos, Math.max(0, BATCHES - STEADY_BATCHES), BATCHES);
+        Arrays.sort(last);
+        long steady = last[last.length / 2];
+        int steadyBatch = 0;
+        while (steadyBatch < BATCHES - 1 && batchNanos[steadyBatch] > steady * 1.2)
+            steadyBatch++;
+
+        System.out.printf("First round took %,d us, steady state %,d ns per round%n", firstRound / 1000, steady);
+        System.out.printf("Steady state reached at %,d ms uptime, after %,d rounds served%n",
+                batchUptime[steadyBatch], (long) steadyBatch * ROUNDS_PER_BATCH);
+    }
+}
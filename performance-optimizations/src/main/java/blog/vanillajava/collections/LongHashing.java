@@ -0,0 +1,42 @@
+package blog.vanillajava.collections;
+
+/**
+ * The hashing and sizing shared by the {@code long} keyed maps in this package.
+ */
+final class LongHashing {
+
+    /**
+     * The fraction of slots which may be used before a map doubles in size.
+     * Linear probing degrades quickly above this.
+     */
+    static final double LOAD_FACTOR = 0.5;
+
+    private LongHashing() {
+    }
+
+    /**
+     * Spreads the bits of a key so that keys differing only in their high bits, such as
+     * {@code @ShortText} encoded names, or only in their low bits, such as counters, use different slots.
+     */
+    static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * @return the number of slots, a power of two, to hold {@code expectedSize} keys.
+     */
+    static int capacityFor(int expectedSize) {
+        long slots = (long) Math.ceil(Math.max(8, expectedSize) / LOAD_FACTOR);
+        if (slots > 1 << 30)
+            throw new IllegalArgumentException("Too many keys " + expectedSize);
+        return Integer.highestOneBit((int) slots - 1) << 1;
+    }
+
+    /**
+     * @return the number of keys at which a map with {@code capacity} slots should resize.
+     */
+    static int resizeAt(int capacity) {
+        return (int) (capacity * LOAD_FACTOR);
+    }
+}
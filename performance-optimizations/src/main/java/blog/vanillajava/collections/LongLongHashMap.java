@@ -0,0 +1,186 @@
+package blog.vanillajava.collections;
+
+import java.util.Arrays;
+
+/**
+ * A map from a primitive {@code long} to a primitive {@code long}, such as a sequence number or count per
+ * security, which never boxes and only allocates when it resizes.
+ *
+ * <p>This uses the same layout as {@link LongObjectHashMap}. As a {@code long} has no {@code null}, a
+ * missing key returns the {@code missingValue} given to the constructor.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public final class LongLongHashMap {
+
+    private final long missingValue;
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int resizeAt;
+    private int size;
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    /**
+     * @param expectedSize the number of keys to size the map for without resizing.
+     * @param missingValue the value returned for a key which isn't in the map.
+     */
+    public LongLongHashMap(int expectedSize, long missingValue) {
+        this.missingValue = missingValue;
+        allocate(LongHashing.capacityFor(expectedSize));
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = LongHashing.resizeAt(capacity);
+    }
+
+    /**
+     * @return the value for the key, or the missing value if there isn't one.
+     */
+    public long get(long key) {
+        if (key == 0)
+            return hasZeroKey ? zeroValue : missingValue;
+        long[] keys = this.keys;
+        int mask = this.mask;
+        for (int i = LongHashing.slot(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key)
+                return values[i];
+            if (k == 0)
+                return missingValue;
+        }
+    }
+
+    /**
+     * @return {@code true} if the map has a value for the key.
+     */
+    public boolean containsKey(long key) {
+        if (key == 0)
+            return hasZeroKey;
+        for (int i = LongHashing.slot(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key)
+                return true;
+            if (k == 0)
+                return false;
+        }
+    }
+
+    /**
+     * Sets the value for a key.
+     *
+     * @return the previous value, or the missing value if there wasn't one.
+     */
+    public long put(long key, long value) {
+        if (key == 0) {
+            long prev = hasZeroKey ? zeroValue : missingValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return prev;
+        }
+        int i = LongHashing.slot(key, mask);
+        for (long k; (k = keys[i]) != 0; i = (i + 1) & mask) {
+            if (k == key) {
+                long prev = values[i];
+                values[i] = value;
+                return prev;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt)
+            resize();
+        return missingValue;
+    }
+
+    /**
+     * Removes the value for a key.
+     *
+     * @return the value removed, or the missing value if there wasn't one.
+     */
+    public long remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey)
+                return missingValue;
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+        for (int i = LongHashing.slot(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == 0)
+                return missingValue;
+            if (k == key) {
+                long prev = values[i];
+                shiftBack(i);
+                size--;
+                return prev;
+            }
+        }
+    }
+
+    /**
+     * Fills the slot at {@code gap} with a later entry from the same run which would otherwise no
+     * longer be found, repeating until the end of the run.
+     */
+    private void shiftBack(int gap) {
+        for (int i = (gap + 1) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == 0)
+                break;
+            int home = LongHashing.slot(k, mask);
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = k;
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(keys.length * 2);
+        for (int j = 0; j < oldKeys.length; j++) {
+            long k = oldKeys[j];
+            if (k == 0)
+                continue;
+            int i = LongHashing.slot(k, mask);
+            while (keys[i] != 0)
+                i = (i + 1) & mask;
+            keys[i] = k;
+            values[i] = oldValues[j];
+        }
+    }
+
+    /**
+     * @return the value returned for a key which isn't in the map.
+     */
+    public long missingValue() {
+        return missingValue;
+    }
+
+    /**
+     * @return the number of keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every key, keeping the arrays.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        hasZeroKey = false;
+        size = 0;
+    }
+}
@@ -0,0 +1,187 @@
+package blog.vanillajava.collections;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Compares {@code get} and {@code put} of an existing key, as done for per-security state on every tick,
+ * between {@link HashMap}, {@link ConcurrentHashMap} and the primitive maps in this package.
+ *
+ * <p>The keys are random {@code long}s, looked up in a random order, so with more keys the maps no longer
+ * fit in the CPU caches. {@link #main} adds the GC profiler, so the {@code gc.alloc.rate.norm} shows the
+ * bytes allocated per operation; {@code HashMap<Long, Long>} boxes each key it looks up and each value
+ * it stores. The 10M key runs need a heap of several GB.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Fork(value = 1, warmups = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 5, time = 200, timeUnit = MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = MILLISECONDS)
+public class LongMapBenchmark {
+
+    static final int LOOKUPS = 1 << 20;
+
+    @Param({"1000", "100000", "10000000"})
+    int keys;
+
+    @Param({"HashMap", "ConcurrentHashMap", "LongObjectHashMap", "LongLongHashMap", "OffHeapLongLongHashMap"})
+    String map;
+
+    private LongMap longMap;
+    private long[] lookups;
+    private int next;
+
+    /**
+     * The operations compared, with one implementation used per trial so the call is monomorphic.
+     */
+    interface LongMap {
+        long get(long key);
+
+        void put(long key, long value);
+
+        default void close() {
+        }
+    }
+
+    /**
+     * Adapts a boxed map, as {@code Map<Long, Long>}.
+     */
+    static final class BoxedLongMap implements LongMap {
+        private final Map<Long, Long> map;
+
+        BoxedLongMap(Map<Long, Long> map) {
+            this.map = map;
+        }
+
+        @Override
+        public long get(long key) {
+            Long value = map.get(key);
+            return value == null ? -1 : value;
+        }
+
+        @Override
+        public void put(long key, long value) {
+            map.put(key, value);
+        }
+    }
+
+    /**
+     * Adapts a {@link LongObjectHashMap} holding preallocated values, as per-security state would be.
+     */
+    static final class ObjectLongMap implements LongMap {
+        private final LongObjectHashMap<long[]> map;
+
+        ObjectLongMap(int size) {
+            map = new LongObjectHashMap<>(size);
+        }
+
+        @Override
+        public long get(long key) {
+            long[] value = map.get(key);
+            return value == null ? -1 : value[0];
+        }
+
+        @Override
+        public void put(long key, long value) {
+            long[] state = map.get(key);
+            if (state == null)
+                map.put(key, state = new long[1]);
+            state[0] = value;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        switch (map) {
+            case "HashMap":
+                longMap = new BoxedLongMap(new HashMap<>(keys * 2));
+                break;
+            case "ConcurrentHashMap":
+                longMap = new BoxedLongMap(new ConcurrentHashMap<>(keys * 2));
+                break;
+            case "LongObjectHashMap":
+                longMap = new ObjectLongMap(keys);
+                break;
+            case "LongLongHashMap": {
+                LongLongHashMap m = new LongLongHashMap(keys, -1);
+                longMap = new LongMap() {
+                    public long get(long key) {
+                        return m.get(key);
+                    }
+
+                    public void put(long key, long value) {
+                        m.put(key, value);
+                    }
+                };
+                break;
+            }
+            case "OffHeapLongLongHashMap": {
+                OffHeapLongLongHashMap m = new OffHeapLongLongHashMap(keys, -1);
+                longMap = new LongMap() {
+                    public long get(long key) {
+                        return m.get(key);
+                    }
+
+                    public void put(long key, long value) {
+                        m.put(key, value);
+                    }
+
+                    public void close() {
+                        m.close();
+                    }
+                };
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown map " + map);
+        }
+
+        Random random = new Random(1);
+        long[] keyArray = new long[keys];
+        for (int i = 0; i < keys; i++) {
+            keyArray[i] = random.nextLong();
+            longMap.put(keyArray[i], i);
+        }
+        lookups = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++)
+            lookups[i] = keyArray[random.nextInt(keys)];
+    }
+
+    @TearDown
+    public void tearDown() {
+        longMap.close();
+    }
+
+    @Benchmark
+    public long get() {
+        return longMap.get(lookups[next++ & (LOOKUPS - 1)]);
+    }
+
+    @Benchmark
+    public void put() {
+        int i = next++;
+        longMap.put(lookups[i & (LOOKUPS - 1)], i);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + LongMapBenchmark.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,181 @@
+package blog.vanillajava.collections;
+
+import java.util.Arrays;
+
+/**
+ * A map from a primitive {@code long} to an object, such as per-security state keyed by a
+ * {@code @ShortText} {@code securityId}, which neither boxes keys nor allocates on {@link #get} or on a
+ * {@link #put} which replaces a value.
+ *
+ * <p>Keys and values are held in parallel arrays with linear probing, so a lookup is usually a single
+ * cache miss on the keys and one on the values, compared with the key, node and boxed {@code Long} a
+ * {@code HashMap<Long, V>} reads. Removal shifts later entries back rather than leave tombstones.
+ * Key 0 is the marker for an empty slot, so its value is held separately.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @param <V> the type of the values, which can't be {@code null}.
+ */
+public final class LongObjectHashMap<V> {
+
+    private long[] keys;
+    private V[] values;
+    private int mask;
+    private int resizeAt;
+    private int size;
+    private V zeroValue;
+
+    public LongObjectHashMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize the number of keys to size the map for without resizing.
+     */
+    public LongObjectHashMap(int expectedSize) {
+        allocate(LongHashing.capacityFor(expectedSize));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = (V[]) new Object[capacity];
+        mask = capacity - 1;
+        resizeAt = LongHashing.resizeAt(capacity);
+    }
+
+    /**
+     * @return the value for the key, or {@code null} if there isn't one.
+     */
+    public V get(long key) {
+        if (key == 0)
+            return zeroValue;
+        long[] keys = this.keys;
+        int mask = this.mask;
+        for (int i = LongHashing.slot(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key)
+                return values[i];
+            if (k == 0)
+                return null;
+        }
+    }
+
+    /**
+     * @return {@code true} if the map has a value for the key.
+     */
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Sets the value for a key.
+     *
+     * @return the previous value, or {@code null} if there wasn't one.
+     */
+    public V put(long key, V value) {
+        if (value == null)
+            throw new NullPointerException("value");
+        if (key == 0) {
+            V prev = zeroValue;
+            zeroValue = value;
+            if (prev == null)
+                size++;
+            return prev;
+        }
+        int i = LongHashing.slot(key, mask);
+        for (long k; (k = keys[i]) != 0; i = (i + 1) & mask) {
+            if (k == key) {
+                V prev = values[i];
+                values[i] = value;
+                return prev;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > resizeAt)
+            resize();
+        return null;
+    }
+
+    /**
+     * Removes the value for a key.
+     *
+     * @return the value removed, or {@code null} if there wasn't one.
+     */
+    public V remove(long key) {
+        if (key == 0) {
+            V prev = zeroValue;
+            if (prev != null) {
+                zeroValue = null;
+                size--;
+            }
+            return prev;
+        }
+        for (int i = LongHashing.slot(key, mask); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == 0)
+                return null;
+            if (k == key) {
+                V prev = values[i];
+                shiftBack(i);
+                size--;
+                return prev;
+            }
+        }
+    }
+
+    /**
+     * Fills the slot at {@code gap} with a later entry from the same run which would otherwise no
+     * longer be found, repeating until the end of the run.
+     */
+    private void shiftBack(int gap) {
+        for (int i = (gap + 1) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == 0)
+                break;
+            int home = LongHashing.slot(k, mask);
+            // move the entry if its home slot isn't between the gap and where it is now
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = k;
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        V[] oldValues = values;
+        allocate(keys.length * 2);
+        for (int j = 0; j < oldKeys.length; j++) {
+            long k = oldKeys[j];
+            if (k == 0)
+                continue;
+            int i = LongHashing.slot(k, mask);
+            while (keys[i] != 0)
+                i = (i + 1) & mask;
+            keys[i] = k;
+            values[i] = oldValues[j];
+        }
+    }
+
+    /**
+     * @return the number of keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every key, keeping the arrays.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        zeroValue = null;
+        size = 0;
+    }
+}
@@ -0,0 +1,214 @@
+package blog.vanillajava.collections;
+
+import net.openhft.chronicle.bytes.Bytes;
+
+import java.io.Closeable;
+
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+
+/**
+ * A {@link LongLongHashMap} held in off-heap memory, so a map of millions of keys adds nothing for the GC
+ * to scan or copy, and each key is next to its value, so a lookup is usually one cache miss.
+ *
+ * <p>Each slot is 16 bytes, the key followed by the value. The memory is allocated up front and when the
+ * map doubles in size, and must be released with {@link #close()}.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public final class OffHeapLongLongHashMap implements Closeable {
+
+    static final int ENTRY_SIZE = 16;
+
+    private final long missingValue;
+    private Bytes<Void> bytes;
+    private long address;
+    private int mask;
+    private int resizeAt;
+    private int size;
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    /**
+     * @param expectedSize the number of keys to size the map for without resizing.
+     * @param missingValue the value returned for a key which isn't in the map.
+     */
+    public OffHeapLongLongHashMap(int expectedSize, long missingValue) {
+        this.missingValue = missingValue;
+        allocate(LongHashing.capacityFor(expectedSize));
+    }
+
+    private void allocate(int capacity) {
+        long length = (long) capacity * ENTRY_SIZE;
+        bytes = Bytes.allocateDirect(length);
+        bytes.bytesStore().zeroOut(0, length);
+        address = bytes.addressForRead(0);
+        mask = capacity - 1;
+        resizeAt = LongHashing.resizeAt(capacity);
+    }
+
+    private long keyAt(int slot) {
+        return MEMORY.readLong(address + (long) slot * ENTRY_SIZE);
+    }
+
+    private long valueAt(int slot) {
+        return MEMORY.readLong(address + (long) slot * ENTRY_SIZE + 8);
+    }
+
+    private void set(int slot, long key, long value) {
+        long entry = address + (long) slot * ENTRY_SIZE;
+        MEMORY.writeLong(entry, key);
+        MEMORY.writeLong(entry + 8, value);
+    }
+
+    /**
+     * @return the value for the key, or the missing value if there isn't one.
+     */
+    public long get(long key) {
+        if (key == 0)
+            return hasZeroKey ? zeroValue : missingValue;
+        for (int i = LongHashing.slot(key, mask); ; i = (i + 1) & mask) {
+            long k = keyAt(i);
+            if (k == key)
+                return valueAt(i);
+            if (k == 0)
+                return missingValue;
+        }
+    }
+
+    /**
+     * @return {@code true} if the map has a value for the key.
+     */
+    public boolean containsKey(long key) {
+        if (key == 0)
+            return hasZeroKey;
+        for (int i = LongHashing.slot(key, mask); ; i = (i + 1) & mask) {
+            long k = keyAt(i);
+            if (k == key)
+                return true;
+            if (k == 0)
+                return false;
+        }
+    }
+
+    /**
+     * Sets the value for a key.
+     *
+     * @return the previous value, or the missing value if there wasn't one.
+     */
+    public long put(long key, long value) {
+        if (key == 0) {
+            long prev = hasZeroKey ? zeroValue : missingValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return prev;
+        }
+        int i = LongHashing.slot(key, mask);
+        for (long k; (k = keyAt(i)) != 0; i = (i + 1) & mask) {
+            if (k == key) {
+                long prev = valueAt(i);
+                set(i, key, value);
+                return prev;
+            }
+        }
+        set(i, key, value);
+        if (++size > resizeAt)
+            resize();
+        return missingValue;
+    }
+
+    /**
+     * Removes the value for a key.
+     *
+     * @return the value removed, or the missing value if there wasn't one.
+     */
+    public long remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey)
+                return missingValue;
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+        for (int i = LongHashing.slot(key, mask); ; i = (i + 1) & mask) {
+            long k = keyAt(i);
+            if (k == 0)
+                return missingValue;
+            if (k == key) {
+                long prev = valueAt(i);
+                shiftBack(i);
+                size--;
+                return prev;
+            }
+        }
+    }
+
+    /**
+     * Fills the slot at {@code gap} with a later entry from the same run which would otherwise no
+     * longer be found, repeating until the end of the run.
+     */
+    private void shiftBack(int gap) {
+        for (int i = (gap + 1) & mask; ; i = (i + 1) & mask) {
+            long k = keyAt(i);
+            if (k == 0)
+                break;
+            int home = LongHashing.slot(k, mask);
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                set(gap, k, valueAt(i));
+                gap = i;
+            }
+        }
+        set(gap, 0, 0);
+    }
+
+    private void resize() {
+        Bytes<Void> oldBytes = bytes;
+        long oldAddress = address;
+        int oldCapacity = mask + 1;
+        allocate(oldCapacity * 2);
+        for (int j = 0; j < oldCapacity; j++) {
+            long entry = oldAddress + (long) j * ENTRY_SIZE;
+            long k = MEMORY.readLong(entry);
+            if (k == 0)
+                continue;
+            int i = LongHashing.slot(k, mask);
+            while (keyAt(i) != 0)
+                i = (i + 1) & mask;
+            set(i, k, MEMORY.readLong(entry + 8));
+        }
+        oldBytes.releaseLast();
+    }
+
+    /**
+     * @return the value returned for a key which isn't in the map.
+     */
+    public long missingValue() {
+        return missingValue;
+    }
+
+    /**
+     * @return the number of keys.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every key, keeping the memory.
+     */
+    public void clear() {
+        bytes.bytesStore().zeroOut(0, (long) (mask + 1) * ENTRY_SIZE);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    /**
+     * Releases the off-heap memory. The map can't be used afterwards.
+     */
+    @Override
+    public void close() {
+        bytes.releaseLast();
+    }
+}
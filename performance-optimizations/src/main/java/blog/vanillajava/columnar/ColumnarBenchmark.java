@@ -0,0 +1,130 @@
+package blog.vanillajava.columnar;
+
+import blog.vanillajava.columnar.MarketDataColumns.Side;
+import blog.vanillajava.triviallycopyable.TriviallyCopyableMarketData;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Benchmark comparing scans of one column over a {@link MarketDataColumns} with iterating over
+ * {@link TriviallyCopyableMarketData} objects row by row.
+ *
+ * <p>The rows cover {@code -Dsecurities} securities and each scan is for one of them.
+ * See {@code BenchmarkRunner} for the JVM options required on Java 17+.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Fork(value = 1, warmups = 1)
+@Warmup(iterations = 5, time = 500, timeUnit = MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = MILLISECONDS)
+public class ColumnarBenchmark {
+    static final int SECURITIES = Integer.getInteger("securities", 16);
+    static final long SECURITY_ID = 7;
+
+    @Param({"1000000"})
+    int rows;
+
+    TriviallyCopyableMarketData[] objects;
+    MarketDataColumns columns;
+
+    @Setup
+    public void setup() {
+        Random rand = new Random(1);
+        objects = new TriviallyCopyableMarketData[rows];
+        columns = new MarketDataColumns(rows);
+        double mid = 100;
+        for (int i = 0; i < rows; i++) {
+            mid += rand.nextInt(3) - 1;
+            TriviallyCopyableMarketData md = new TriviallyCopyableMarketData();
+            md.securityId(rand.nextInt(SECURITIES))
+                    .time(i)
+                    .bidQty0(1 + rand.nextInt(1000))
+                    .askQty0(1 + rand.nextInt(1000))
+                    .bidPrice0(mid - 0.5)
+                    .askPrice0(mid + 0.5);
+            objects[i] = md;
+            columns.add(md);
+        }
+    }
+
+    @Benchmark
+    public double rowMinAskPrice0() {
+        double min = Double.POSITIVE_INFINITY;
+        for (TriviallyCopyableMarketData md : objects)
+            if (md.securityId() == SECURITY_ID)
+                min = Math.min(min, md.askPrice0());
+        return min;
+    }
+
+    @Benchmark
+    public double columnMinAskPrice0() {
+        return columns.minPrice(Side.ASK, 0, SECURITY_ID);
+    }
+
+    @Benchmark
+    public double rowMaxAskPrice0() {
+        double max = Double.NEGATIVE_INFINITY;
+        for (TriviallyCopyableMarketData md : objects)
+            if (md.securityId() == SECURITY_ID)
+                max = Math.max(max, md.askPrice0());
+        return max;
+    }
+
+    @Benchmark
+    public double columnMaxAskPrice0() {
+        return columns.maxPrice(Side.ASK, 0, SECURITY_ID);
+    }
+
+    @Benchmark
+    public double rowVwapBid0() {
+        double value = 0;
+        long volume = 0;
+        for (TriviallyCopyableMarketData md : objects) {
+            if (md.securityId() == SECURITY_ID) {
+                value += md.bidPrice0() * md.bidQty0();
+                volume += md.bidQty0();
+            }
+        }
+        return value / volume;
+    }
+
+    @Benchmark
+    public double columnVwapBid0() {
+        return columns.vwap(Side.BID, 0, SECURITY_ID);
+    }
+
+    @Benchmark
+    public double rowMeanMid0() {
+        double sum = 0;
+        int count = 0;
+        for (TriviallyCopyableMarketData md : objects) {
+            if (md.securityId() == SECURITY_ID) {
+                sum += md.bidPrice0() + md.askPrice0();
+                count++;
+            }
+        }
+        return sum / 2 / count;
+    }
+
+    @Benchmark
+    public double columnMeanMid0() {
+        return columns.meanMid(0, SECURITY_ID);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + ColumnarBenchmark.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,168 @@
+package blog.vanillajava.decimal;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Rounds a {@code double} to a number of decimal places, HALF_UP, giving the same result as
+ * {@code new BigDecimal(x).setScale(decimals, RoundingMode.HALF_UP).doubleValue()}, or the same with
+ * {@code BigDecimal.valueOf(x)}, without creating objects.
+ *
+ * <p>{@link MyBenchmark#round6(double)} uses {@code (long) (x * 1e6 + 0.5) / 1e6}, which goes wrong three
+ * ways: {@code x * 1e6} is rounded, so a value just below a half can become a half and round up, or the
+ * reverse; adding 0.5 can round up to the next whole number, as {@code FindRoundingBoundary} shows for
+ * {@code Math.round}; and casting to {@code long} truncates towards zero, so negative values round the wrong
+ * way.</p>
+ *
+ * <p>Here {@code |x| * 10^decimals + 0.5} is computed and truncated as before, and the product compared with
+ * the halves either side. The product is out by at most half an ulp, so if it is further than that from a
+ * half, the answer is the same as for the exact product. Only when it is closer, rarely for random data, is the exact
+ * error of the product worked out with Dekker's two-product, which needs no {@code Math.fma}. Values are
+ * rounded as their magnitude, then negated, so a half rounds away from zero as {@code HALF_UP} does.</p>
+ *
+ * <p>{@link #round(double, int)} rounds the exact binary value of the {@code double}, so {@code 0.0000005},
+ * which is {@code 4.99999999999999977e-7}, rounds to 0 at 6 decimal places, as it does with
+ * {@code new BigDecimal(x)}. {@link #roundShortest(double, int)} rounds the shortest decimal which reads back as
+ * the {@code double}, as {@code BigDecimal.valueOf(x)} does, so {@code 0.0000005} rounds to {@code 0.000001}.
+ * The two only differ when that decimal is exactly a half, e.g. the mid of two prices with as many decimal
+ * places as the mid is rounded to.</p>
+ *
+ * <p>The shortest decimal is only on the other side of a half from the exact value if it is the half, i.e.
+ * if {@code |x|} is the nearest {@code double} to the half, which a single division finds as it is correctly
+ * rounded. This holds while the half has at most 15 significant digits, as two such decimals can't read back
+ * as the same {@code double}. Halves with more digits fall back to {@code BigDecimal.valueOf}.</p>
+ *
+ * <p>Values where {@code |x| * 10^decimals} is 2^50 or more, e.g. prices over a billion at 6 decimal places,
+ * fall back to {@code BigDecimal}. NaN and infinities are returned unchanged.</p>
+ */
+public final class DecimalRounding {
+
+    /**
+     * The most decimal places supported, as 10^22 is the largest power of ten a {@code double} holds exactly.
+     */
+    public static final int MAX_DECIMALS = 22;
+
+    // below 2^50, the product's error is at most 2^-4, and its whole part fits in a long
+    private static final double MAX_FAST = 0x1p50;
+    // above 2^52 every double is a whole number
+    private static final double MIN_WHOLE = 0x1p52;
+    // 2^27 + 1, for splitting a double into two halves of 26 bits
+    private static final double SPLITTER = 0x1p27 + 1;
+    // the largest whole part below a half with at most 15 significant digits, i.e. 10 * whole + 5 < 10^15
+    private static final long MAX_SHORT_HALF = 99_999_999_999_999L;
+
+    private static final double[] POWERS_OF_TEN = new double[MAX_DECIMALS + 1];
+
+    static {
+        double power = 1;
+        for (int i = 0; i <= MAX_DECIMALS; i++) {
+            POWERS_OF_TEN[i] = power;
+            power *= 10;
+        }
+    }
+
+    private DecimalRounding() {
+    }
+
+    /**
+     * @return the exact value of {@code x} rounded HALF_UP to 6 decimal places.
+     */
+    public static double round6(double x) {
+        // a constant factor lets the JIT fold its split
+        return round(x, 6, 1e6, false);
+    }
+
+    /**
+     * @return the exact value of {@code x} rounded HALF_UP to {@code decimals} decimal places, from 0 to
+     * {@value #MAX_DECIMALS}.
+     */
+    public static double round(double x, int decimals) {
+        return round(x, decimals, factor(decimals), false);
+    }
+
+    /**
+     * @return the shortest decimal of {@code x} rounded HALF_UP to 6 decimal places.
+     */
+    public static double roundShortest6(double x) {
+        return round(x, 6, 1e6, true);
+    }
+
+    /**
+     * @return the shortest decimal of {@code x} rounded HALF_UP to {@code decimals} decimal places, from 0 to
+     * {@value #MAX_DECIMALS}.
+     */
+    public static double roundShortest(double x, int decimals) {
+        return round(x, decimals, factor(decimals), true);
+    }
+
+    private static double factor(int decimals) {
+        if (decimals < 0 || decimals > MAX_DECIMALS)
+            throw new IllegalArgumentException("decimals must be between 0 and " + MAX_DECIMALS + ": " + decimals);
+        return POWERS_OF_TEN[decimals];
+    }
+
+    private static double round(double x, int decimals, double factor, boolean shortest) {
+        double magnitude = Math.abs(x);
+        double product = magnitude * factor;
+        if (!(product >= 0.5 && product < MAX_FAST))
+            return roundOutOfRange(x, decimals, factor, product, shortest);
+
+        // adding 0.5 and truncating is HALF_UP, unless the product or the sum was rounded across a half
+        long whole = (long) (product + 0.5);
+        // exact, as whole is within 1 of product, and from just under -0.5 to under 0.5
+        double fromWhole = product - whole;
+        // the rounding error of the product is at most half an ulp, under product * 2^-53, so only a product
+        // which is that close to a half can round differently from the exact product, and the product of the
+        // nearest double to a half is within twice that of the half; this is rare
+        if (Math.abs(fromWhole) >= 0.5 - product * 0x1p-51) {
+            if (shortest) {
+                long below = fromWhole < 0 ? whole - 1 : whole;
+                if (below > MAX_SHORT_HALF)
+                    return BigDecimal.valueOf(x).setScale(decimals, RoundingMode.HALF_UP).doubleValue();
+                // the shortest decimal is the half, so it rounds up
+                if (magnitude == (2 * below + 1) / (2 * factor))
+                    return (x < 0 ? -(below + 1) : below + 1) / factor;
+            }
+            double error = productError(magnitude, factor, product);
+            // compare the exact product with the nearer half, where fromWhole +/- 0.5 is exact, as fromWhole
+            // is close to -/+ 0.5
+            if (fromWhole < 0) {
+                if (fromWhole + 0.5 + error < 0)
+                    whole--;
+            } else if (fromWhole - 0.5 + error >= 0) {
+                whole++;
+            }
+        }
+        // negating a long, rather than the double, doesn't give -0.0, which BigDecimal doesn't have
+        return (x < 0 ? -whole : whole) / factor;
+    }
+
+    /**
+     * @return the exact {@code a * b - product}, where {@code product} is {@code a * b} rounded, using Dekker's
+     * two-product. This is exact unless a partial product underflows, which can't happen as {@code product}
+     * is near 0.5 or more.
+     */
+    static double productError(double a, double b, double product) {
+        double aSplit = a * SPLITTER;
+        double aHigh = aSplit - (aSplit - a);
+        double aLow = a - aHigh;
+        double bSplit = b * SPLITTER;
+        double bHigh = bSplit - (bSplit - b);
+        double bLow = b - bHigh;
+        return ((aHigh * bHigh - product) + aHigh * bLow + aLow * bHigh) + aLow * bLow;
+    }
+
+    private static double roundOutOfRange(double x, int decimals, double factor, double product, boolean shortest) {
+        if (Double.isNaN(x) || Double.isInfinite(x) || Math.abs(x) >= MIN_WHOLE)
+            return x;
+        if (product < 0.5) {
+            // the shortest decimal is the first half, so it rounds up
+            if (shortest && Math.abs(x) == 0.5 / factor)
+                return (x < 0 ? -1 : 1) / factor;
+            // the exact product is under 0.5 too, as it is within a quarter of an ulp, under 2^-55
+            return 0.0;
+        }
+        BigDecimal decimal = shortest ? BigDecimal.valueOf(x) : new BigDecimal(x);
+        return decimal.setScale(decimals, RoundingMode.HALF_UP).doubleValue();
+    }
+}
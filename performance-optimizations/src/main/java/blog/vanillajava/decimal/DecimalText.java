@@ -0,0 +1,319 @@
+package blog.vanillajava.decimal;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses and formats prices as ASCII decimal text, e.g. from a FIX or CSV feed, straight from and to a
+ * {@code byte[]} or {@link Bytes}, as a {@code double} or a {@link FixedPrice} {@code long}, without creating
+ * a {@code String} or any other object, except for the {@code double}s described below.
+ *
+ * <p>A {@code double} is parsed exactly when its digits, without the decimal point, are at most 2^53 and it
+ * has at most 22 decimal places, as both the digits and the power of ten are then exact {@code double}s, and
+ * dividing one by the other rounds the exact value to the nearest {@code double}, as
+ * {@link Double#parseDouble(String)} does. Anything else, such as an exponent, more digits or an invalid
+ * number, falls back to {@code Double.parseDouble}, which allocates, so the result, or exception, is always
+ * the same.</p>
+ *
+ * <p>A {@code double} is formatted with the fewest decimal places which read back as the same value, and
+ * zero as {@code 0.0} or {@code -0.0}. A magnitude under 0.001 or of 10^7 or more, where
+ * {@link Double#toString(double)} uses scientific notation, or one which needs more than 17 decimal places,
+ * NaN or an infinity, is formatted with {@code Double.toString}, which allocates. Either way it parses back
+ * to the same {@code double}.</p>
+ *
+ * <p>A fixed-point price is parsed from plain decimal text, with an optional sign, rounding HALF_UP after 6
+ * decimal places, and formatted with trailing zeros removed, but at least one decimal place, so it also
+ * round-trips. Invalid text or a price out of range throws a {@link NumberFormatException}.</p>
+ */
+public final class DecimalText {
+
+    /**
+     * The most bytes formatting a {@code double} or fixed-point price writes, e.g.
+     * {@code -2.2250738585072014E-308}.
+     */
+    public static final int MAX_LENGTH = 24;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    // the most decimal places formatDouble tries before falling back
+    private static final int MAX_FORMAT_PLACES = 17;
+    // the largest magnitude of a long which converts to and from a double exactly
+    private static final long MAX_EXACT = 1L << 53;
+    // the largest mantissa which can have another digit appended without overflowing
+    private static final long MAX_MANTISSA = (Long.MAX_VALUE - 9) / 10;
+    // the smallest negated fixed-point price which can be multiplied by 10, or 10^missing decimals
+    private static final long MIN_NEGATED = Long.MIN_VALUE / 10;
+    private static final long[] MIN_NEGATED_BY_DECIMALS = new long[FixedPrice.DECIMALS + 1];
+
+    static {
+        for (int i = 0; i <= FixedPrice.DECIMALS; i++)
+            MIN_NEGATED_BY_DECIMALS[i] = Long.MIN_VALUE / (long) POWERS_OF_TEN[i];
+    }
+
+    private DecimalText() {
+    }
+
+    /**
+     * @return the {@code double} in {@code bytes[offset, offset + length)}, as {@link Double#parseDouble}
+     * would give for the same text.
+     * @throws NumberFormatException if the text isn't a number.
+     */
+    public static double parseDouble(byte[] bytes, int offset, int length) {
+        return parseDouble(bytes, null, offset, length);
+    }
+
+    /**
+     * @return the {@code double} in {@code bytes} from {@code offset} for {@code length} bytes.
+     * @throws NumberFormatException if the text isn't a number.
+     */
+    public static double parseDouble(BytesStore<?, ?> bytes, long offset, int length) {
+        return parseDouble(null, bytes, offset, length);
+    }
+
+    /**
+     * @return the price in {@code bytes[offset, offset + length)} as a {@link FixedPrice}.
+     * @throws NumberFormatException if the text isn't a plain decimal number, or is out of range.
+     */
+    public static long parseFixed(byte[] bytes, int offset, int length) {
+        return parseFixed(bytes, null, offset, length);
+    }
+
+    /**
+     * @return the price in {@code bytes} from {@code offset} for {@code length} bytes, as a {@link FixedPrice}.
+     * @throws NumberFormatException if the text isn't a plain decimal number, or is out of range.
+     */
+    public static long parseFixed(BytesStore<?, ?> bytes, long offset, int length) {
+        return parseFixed(null, bytes, offset, length);
+    }
+
+    /**
+     * Writes {@code value} to {@code bytes} from {@code offset}, which needs room for up to {@link #MAX_LENGTH}.
+     *
+     * @return the number of bytes written.
+     */
+    public static int formatDouble(double value, byte[] bytes, int offset) {
+        return formatDouble(value, bytes, null, offset);
+    }
+
+    /**
+     * Appends {@code value} to {@code bytes} at its write position.
+     */
+    public static void appendDouble(Bytes<?> bytes, double value) {
+        formatDouble(value, null, bytes, bytes.writePosition());
+    }
+
+    /**
+     * Writes the fixed-point {@code price} to {@code bytes} from {@code offset}, which needs room for up to
+     * {@link #MAX_LENGTH}.
+     *
+     * @return the number of bytes written.
+     */
+    public static int formatFixed(long price, byte[] bytes, int offset) {
+        return formatFixed(price, bytes, null, offset);
+    }
+
+    /**
+     * Appends the fixed-point {@code price} to {@code bytes} at its write position.
+     */
+    public static void appendFixed(Bytes<?> bytes, long price) {
+        formatFixed(price, null, bytes, bytes.writePosition());
+    }
+
+    // Each method below reads or writes either array or store, whichever isn't null. The check is cheap and
+    // well predicted, and means each format is implemented once.
+
+    private static int byteAt(byte[] array, BytesStore<?, ?> store, long index) {
+        return array != null ? array[(int) index] : store.readByte(index);
+    }
+
+    private static void put(byte[] array, Bytes<?> store, long index, int b) {
+        if (array != null)
+            array[(int) index] = (byte) b;
+        else
+            store.writeByte(index, (byte) b);
+    }
+
+    private static double parseDouble(byte[] array, BytesStore<?, ?> store, long offset, int length) {
+        long i = offset, end = offset + length;
+        boolean negative = false;
+        if (i < end) {
+            int first = byteAt(array, store, i);
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                i++;
+            }
+        }
+        long mantissa = 0;
+        int digits = 0, scale = -1;
+        for (; i < end; i++) {
+            int b = byteAt(array, store, i);
+            if (b >= '0' && b <= '9') {
+                if (mantissa > MAX_MANTISSA)
+                    return slowParseDouble(array, store, offset, length);
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (scale >= 0)
+                    scale++;
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                // e.g. an exponent, or not a number
+                return slowParseDouble(array, store, offset, length);
+            }
+        }
+        if (digits == 0 || mantissa > MAX_EXACT || scale >= POWERS_OF_TEN.length)
+            return slowParseDouble(array, store, offset, length);
+        double value = scale <= 0 ? mantissa : mantissa / POWERS_OF_TEN[scale];
+        return negative ? -value : value;
+    }
+
+    private static double slowParseDouble(byte[] array, BytesStore<?, ?> store, long offset, int length) {
+        return Double.parseDouble(toString(array, store, offset, length));
+    }
+
+    private static long parseFixed(byte[] array, BytesStore<?, ?> store, long offset, int length) {
+        long i = offset, end = offset + length;
+        boolean negative = false;
+        if (i < end) {
+            int first = byteAt(array, store, i);
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                i++;
+            }
+        }
+        // accumulated as a negative value, as Long.parseLong does, so Long.MIN_VALUE can be parsed
+        long negated = 0;
+        int digits = 0, scale = -1;
+        boolean roundUp = false;
+        for (; i < end; i++) {
+            int b = byteAt(array, store, i);
+            if (b >= '0' && b <= '9') {
+                digits++;
+                if (scale == FixedPrice.DECIMALS) {
+                    // HALF_UP only depends on the first digit dropped
+                    roundUp = b >= '5';
+                    scale++;
+                } else if (scale < FixedPrice.DECIMALS) {
+                    // can't overflow when multiplying, and wraps to positive if subtracting overflows
+                    if (negated < MIN_NEGATED)
+                        throw notAFixedPrice(array, store, offset, length);
+                    negated = negated * 10 - (b - '0');
+                    if (negated > 0)
+                        throw notAFixedPrice(array, store, offset, length);
+                    if (scale >= 0)
+                        scale++;
+                }
+            } else if (b == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                throw notAFixedPrice(array, store, offset, length);
+            }
+        }
+        if (digits == 0)
+            throw notAFixedPrice(array, store, offset, length);
+        int missing = FixedPrice.DECIMALS - Math.max(0, Math.min(scale, FixedPrice.DECIMALS));
+        if (negated < MIN_NEGATED_BY_DECIMALS[missing])
+            throw notAFixedPrice(array, store, offset, length);
+        long price = negated * (long) POWERS_OF_TEN[missing] - (roundUp ? 1 : 0);
+        if (price > 0)
+            throw notAFixedPrice(array, store, offset, length);
+        if (negative)
+            return price;
+        if (price == Long.MIN_VALUE)
+            throw notAFixedPrice(array, store, offset, length);
+        return -price;
+    }
+
+    private static NumberFormatException notAFixedPrice(byte[] array, BytesStore<?, ?> store, long offset, int length) {
+        return new NumberFormatException("Not a fixed-point price: \"" + toString(array, store, offset, length) + '"');
+    }
+
+    private static String toString(byte[] array, BytesStore<?, ?> store, long offset, int length) {
+        if (array != null)
+            return new String(array, (int) offset, length, StandardCharsets.ISO_8859_1);
+        byte[] copy = new byte[length];
+        for (int i = 0; i < length; i++)
+            copy[i] = store.readByte(offset + i);
+        return new String(copy, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Tries the fewest decimal places first, as a price is usually a whole number of ticks.
+     */
+    private static int formatDouble(double value, byte[] array, Bytes<?> store, long offset) {
+        if (value == 0)
+            return formatParts(Double.doubleToRawLongBits(value) < 0, 0, 0, 1, array, store, offset);
+        double abs = Math.abs(value);
+        if (abs >= 1e-3 && abs < 1e7) {
+            for (int places = 0; places <= MAX_FORMAT_PLACES; places++) {
+                double scaled = value * POWERS_OF_TEN[places];
+                if (Math.abs(scaled) >= MAX_EXACT)
+                    break;
+                long m = Math.round(scaled);
+                if (m / POWERS_OF_TEN[places] == value)
+                    return formatDecimal(m, places, array, store, offset);
+            }
+        }
+        // Outside this range Double.toString uses scientific notation
+        String s = Double.toString(value);
+        int length = s.length();
+        if (store != null)
+            store.writeSkip(length);
+        for (int i = 0; i < length; i++)
+            put(array, store, offset + i, s.charAt(i));
+        return length;
+    }
+
+    private static int formatFixed(long price, byte[] array, Bytes<?> store, long offset) {
+        // each part has the sign of price, so negating can't overflow, even for Long.MIN_VALUE
+        long whole = price / FixedPrice.SCALE, fraction = price % FixedPrice.SCALE;
+        int places = FixedPrice.DECIMALS;
+        while (places > 1 && fraction % 10 == 0) {
+            fraction /= 10;
+            places--;
+        }
+        return formatParts(price < 0, Math.abs(whole), Math.abs(fraction), places, array, store, offset);
+    }
+
+    /**
+     * Writes {@code m / 10^places}, with at least one digit either side of the decimal point.
+     */
+    private static int formatDecimal(long m, int places, byte[] array, Bytes<?> store, long offset) {
+        long scale = (long) POWERS_OF_TEN[places];
+        long abs = Math.abs(m);
+        return places == 0
+                ? formatParts(m < 0, abs, 0, 1, array, store, offset)
+                : formatParts(m < 0, abs / scale, abs % scale, places, array, store, offset);
+    }
+
+    /**
+     * Writes {@code [-]whole.fraction}, the fraction as {@code places} digits with leading zeros, from the
+     * last digit back, as dividing by a constant 10 is cheap.
+     */
+    private static int formatParts(boolean negative, long whole, long fraction, int places,
+                                   byte[] array, Bytes<?> store, long offset) {
+        int wholeDigits = 1;
+        for (long w = whole; w >= 10; w /= 10)
+            wholeDigits++;
+        int length = (negative ? 1 : 0) + wholeDigits + 1 + places;
+        if (store != null)
+            store.writeSkip(length);
+
+        long i = offset + length - 1;
+        for (int p = 0; p < places; p++, i--) {
+            put(array, store, i, (int) ('0' + fraction % 10));
+            fraction /= 10;
+        }
+        put(array, store, i--, '.');
+        for (int d = 0; d < wholeDigits; d++, i--) {
+            put(array, store, i, (int) ('0' + whole % 10));
+            whole /= 10;
+        }
+        if (negative)
+            put(array, store, i, '-');
+        return length;
+    }
+}
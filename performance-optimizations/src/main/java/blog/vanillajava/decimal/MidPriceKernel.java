@@ -0,0 +1,54 @@
+package blog.vanillajava.decimal;
+
+/**
+ * Computes mid prices and spreads over whole arrays of prices, as {@code double} values or as
+ * {@link FixedPrice} {@code long} values.
+ *
+ * <p>{@link #best()} returns an implementation using the JDK Vector API where it is available, i.e. built
+ * with the Java 17+ profile and run with {@code --add-modules jdk.incubator.vector}, otherwise a scalar one.
+ * Both give the same results.</p>
+ */
+public interface MidPriceKernel {
+
+    /**
+     * Sets {@code mp[i] = (ap[i] + bp[i]) / 2} without rounding.
+     */
+    void mid(double[] ap, double[] bp, double[] mp, int length);
+
+    /**
+     * Sets {@code mp[i]} to the mid rounded to 6 decimal places, as {@code MyBenchmark.round6} does.
+     */
+    void roundedMid(double[] ap, double[] bp, double[] mp, int length);
+
+    /**
+     * Sets {@code sp[i] = ap[i] - bp[i]}.
+     */
+    void spread(double[] ap, double[] bp, double[] sp, int length);
+
+    /**
+     * Sets {@code mp[i]} to the mid of fixed-point prices, as {@link FixedPrice#mid(long, long)} does, which
+     * can't overflow.
+     */
+    void mid(long[] ap, long[] bp, long[] mp, int length);
+
+    /**
+     * Sets {@code sp[i] = ap[i] - bp[i]} for fixed-point prices.
+     *
+     * @throws ArithmeticException if a difference overflows.
+     */
+    void spread(long[] ap, long[] bp, long[] sp, int length);
+
+    /**
+     * @return the Vector API implementation if it can be loaded, otherwise {@link ScalarMidPriceKernel}.
+     */
+    static MidPriceKernel best() {
+        try {
+            return (MidPriceKernel) Class.forName("blog.vanillajava.decimal.VectorMidPriceKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // not built with the Java 17+ profile, or jdk.incubator.vector not added
+            return new ScalarMidPriceKernel();
+        }
+    }
+}
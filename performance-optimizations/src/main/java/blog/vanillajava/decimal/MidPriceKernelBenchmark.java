@@ -0,0 +1,135 @@
+package blog.vanillajava.decimal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+
+/**
+ * Compares the {@link MidPriceKernel} implementations, scalar and Vector API, for mid, rounded mid and spread
+ * over {@code double} and {@link FixedPrice} {@code long} prices, from arrays which fit in L1 cache to ones
+ * which only fit in main memory.
+ *
+ * <p>The vector kernel needs the classes built by the Java 17+ profile, and is run with
+ * {@code --add-modules jdk.incubator.vector}, which {@link #main(String[])} adds on Java 17+; otherwise the
+ * "vector" benchmarks use the scalar fallback, and say so.</p>
+ */
+@State(Scope.Thread)
+public class MidPriceKernelBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    int size;
+
+    @Param({"scalar", "vector"})
+    String kernel;
+
+    double[] ap, bp, mp;
+    long[] ap5, bp5, mp5;
+    MidPriceKernel midPriceKernel;
+
+    @Setup
+    public void setup() {
+        ap = new double[size];
+        bp = new double[size];
+        mp = new double[size];
+        ap5 = new long[size];
+        bp5 = new long[size];
+        mp5 = new long[size];
+        // the same prices as MyBenchmark
+        Random rand = new Random(1);
+        for (int i = 0; i < size; i++) {
+            int x = rand.nextInt(200000);
+            int y = rand.nextInt(10000);
+            ap[i] = x / 1e5;
+            bp[i] = (x + y) / 1e5;
+            ap5[i] = FixedPrice.fromDouble(ap[i]);
+            bp5[i] = FixedPrice.fromDouble(bp[i]);
+        }
+        midPriceKernel = kernel.equals("vector") ? MidPriceKernel.best() : new ScalarMidPriceKernel();
+        if (kernel.equals("vector") && midPriceKernel instanceof ScalarMidPriceKernel)
+            System.out.println("Vector API not available, using " + midPriceKernel.getClass().getSimpleName());
+        validate(midPriceKernel, ap, bp, ap5, bp5, size);
+    }
+
+    /**
+     * Checks the kernel gives the same results as the scalar loops in {@link MyBenchmark}.
+     */
+    static void validate(MidPriceKernel kernel, double[] ap, double[] bp, long[] ap5, long[] bp5, int size) {
+        double[] mp = new double[size];
+        long[] mp5 = new long[size];
+        kernel.roundedMid(ap, bp, mp, size);
+        for (int i = 0; i < size; i++)
+            if (mp[i] != MyBenchmark.round6((ap[i] + bp[i]) / 2))
+                throw new AssertionError(kernel + " roundedMid " + i + ": " + mp[i]);
+        kernel.mid(ap, bp, mp, size);
+        for (int i = 0; i < size; i++)
+            if (mp[i] != (ap[i] + bp[i]) / 2)
+                throw new AssertionError(kernel + " mid " + i + ": " + mp[i]);
+        kernel.spread(ap, bp, mp, size);
+        for (int i = 0; i < size; i++)
+            if (mp[i] != ap[i] - bp[i])
+                throw new AssertionError(kernel + " spread " + i + ": " + mp[i]);
+        kernel.mid(ap5, bp5, mp5, size);
+        for (int i = 0; i < size; i++)
+            if (mp5[i] != FixedPrice.mid(ap5[i], bp5[i]))
+                throw new AssertionError(kernel + " fixed mid " + i + ": " + mp5[i]);
+        kernel.spread(ap5, bp5, mp5, size);
+        for (int i = 0; i < size; i++)
+            if (mp5[i] != ap5[i] - bp5[i])
+                throw new AssertionError(kernel + " fixed spread " + i + ": " + mp5[i]);
+    }
+
+    @Benchmark
+    public double[] doubleMid() {
+        midPriceKernel.mid(ap, bp, mp, size);
+        return mp;
+    }
+
+    @Benchmark
+    public double[] doubleRoundedMid() {
+        midPriceKernel.roundedMid(ap, bp, mp, size);
+        return mp;
+    }
+
+    @Benchmark
+    public double[] doubleSpread() {
+        midPriceKernel.spread(ap, bp, mp, size);
+        return mp;
+    }
+
+    @Benchmark
+    public long[] fixedPriceMid() {
+        midPriceKernel.mid(ap5, bp5, mp5, size);
+        return mp5;
+    }
+
+    @Benchmark
+    public long[] fixedPriceSpread() {
+        midPriceKernel.spread(ap5, bp5, mp5, size);
+        return mp5;
+    }
+
+    /**
+     * Runs every benchmark, or those for the sizes in {@code -Dsize}, e.g. {@code -Dsize=1000,10000000}.
+     */
+    public static void main(String[] args) throws RunnerException {
+        String version = System.getProperty("java.specification.version");
+        System.out.println("Mid price kernels on Java " + version);
+        ChainedOptionsBuilder opt = new OptionsBuilder()
+                .include(".*" + MidPriceKernelBenchmark.class.getSimpleName() + ".*")
+                .forks(3);
+        String sizes = System.getProperty("size");
+        if (sizes != null)
+            opt.param("size", sizes.split(","));
+        if (!version.startsWith("1.") && Integer.parseInt(version) >= 17)
+            opt.jvmArgsAppend("--add-modules=jdk.incubator.vector");
+        new Runner(opt.build()).run();
+    }
+}
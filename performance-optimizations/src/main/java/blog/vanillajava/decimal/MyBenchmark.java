@@ -5,14 +5,23 @@ import org.decimal4j.immutable.Decimal6f;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
 import org.openjdk.jmh.runner.options.Options;
 import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /* Run on a Ryzen 5950X running Linux with Azul JDK v23
 Benchmark                                          Mode  Cnt        Score        Error  Units
@@ -53,6 +62,10 @@ public class MyBenchmark {
     final Decimal6f[] bp4 = new Decimal6f[SIZE];
     final Decimal6f[] mp4 = new Decimal6f[SIZE];
 
+    final long[] ap5 = new long[SIZE];
+    final long[] bp5 = new long[SIZE];
+    final long[] mp5 = new long[SIZE];
+
     public MyBenchmark() {
         Random rand = new Random(1);
         for (int i = 0; i < SIZE; i++) {
@@ -64,6 +77,8 @@ public class MyBenchmark {
             bp3[i] = Decimal64.fromBigDecimal(bp2[i]);
             ap4[i] = Decimal6f.valueOf(ap[i]);
             bp4[i] = Decimal6f.valueOf(bp[i]);
+            ap5[i] = FixedPrice.fromDouble(ap[i]);
+            bp5[i] = FixedPrice.fromDouble(bp[i]);
         }
 
         // Initial benchmark runs to populate result arrays
@@ -71,6 +86,7 @@ public class MyBenchmark {
         deltixDecimal64MidPrice();
         decimal6fMidPrice();
         bigDecimalMidPriceDivide();
+        fixedPriceMidPrice();
 
         // Validate that results across different representations match
         for (int i = 0; i < SIZE; i++) {
@@ -80,6 +96,8 @@ public class MyBenchmark {
                 throw new AssertionError(mp[i] + " " + mp3[i]);
             if (mp[i] != mp4[i].doubleValue())
                 throw new AssertionError(mp[i] + " " + mp4[i]);
+            if (mp[i] != FixedPrice.toDouble(mp5[i]))
+                throw new AssertionError(mp[i] + " " + FixedPrice.toDouble(mp5[i]));
         }
     }
 
@@ -113,6 +131,25 @@ public class MyBenchmark {
                     .divide(2);
     }
 
+    /**
+     * Benchmark method that computes the mid-price using long fixed-point values and rounding.
+     */
+    @Benchmark
+    public void fixedPriceMidPrice() {
+        for (int i = 0; i < SIZE; i++)
+            mp5[i] = FixedPrice.mid(ap5[i], bp5[i]);
+    }
+
+    /**
+     * Benchmark method that computes the mid-price of double precision values using long fixed-point values,
+     * including the conversions to and from double.
+     */
+    @Benchmark
+    public void fixedPriceMidPriceFromDouble() {
+        for (int i = 0; i < SIZE; i++)
+            mp[i] = FixedPrice.toDouble(FixedPrice.mid(FixedPrice.fromDouble(ap[i]), FixedPrice.fromDouble(bp[i])));
+    }
+
     /**
      * Benchmark method that computes the mid-price using double precision values without rounding.
      */
@@ -124,6 +161,7 @@ public class MyBenchmark {
 
     /**
      * Utility method to round up a double to 6 decimal places.
+     * This is fast, but not always correct near a half or for negative values; see {@link DecimalRounding}.
      */
     static double round6(double x) {
         final double factor = 1e6;
@@ -165,15 +203,79 @@ public class MyBenchmark {
     }
 
     /**
-     * Main method to run the benchmark with the specified options.
+     * Main method to run every benchmark at each thread count in {@code -Dthreads}, with the GC profiler, then
+     * print how the throughput and allocation of each representation scale.
+     *
+     * <p>{@code -Dthreads} is a comma separated list, by default 1, 2, 4, 8 and the number of CPUs, and
+     * {@code -Dbenchmark} a regex of the methods to run, by default all of them. As the state is per thread,
+     * the threads share nothing, so throughput which doesn't scale is due to contention for the memory
+     * bandwidth, caches and the GC, which the allocating representations suffer most from.</p>
      */
     public static void main(String[] args) throws RunnerException {
-        System.out.println("Double vs BigDecimal mid price, with -Dsize=" + SIZE);
-        Options opt = new OptionsBuilder()
-                .include(".*" + MyBenchmark.class.getSimpleName() + ".decimal6fMidPrice")
-                .forks(5)
-                .build();
+        Set<Integer> threadCounts = new TreeSet<>();
+        String threads = System.getProperty("threads");
+        if (threads == null) {
+            threadCounts.addAll(Arrays.asList(1, 2, 4, 8));
+            threadCounts.add(Runtime.getRuntime().availableProcessors());
+        } else {
+            for (String count : threads.split(","))
+                threadCounts.add(Integer.parseInt(count.trim()));
+        }
+        String benchmark = System.getProperty("benchmark", ".*");
+
+        Map<String, Map<Integer, RunResult>> resultsByBenchmark = new TreeMap<>();
+        for (int threadCount : threadCounts) {
+            System.out.println("Double vs BigDecimal mid price, with -Dsize=" + SIZE + " -Dthreads=" + threadCount);
+            Options opt = new OptionsBuilder()
+                    .include(".*" + MyBenchmark.class.getSimpleName() + "." + benchmark)
+                    .addProfiler(GCProfiler.class)
+                    .jvmArgsAppend("-Xmx1g", "-Dsize=" + SIZE)
+                    .warmupIterations(2)
+                    .warmupTime(TimeValue.seconds(1))
+                    .measurementIterations(3)
+                    .measurementTime(TimeValue.seconds(5))
+                    .threads(threadCount)
+                    .forks(Integer.getInteger("forks", 2))
+                    .build();
+
+            for (RunResult result : new Runner(opt).run())
+                resultsByBenchmark.computeIfAbsent(result.getParams().getBenchmark(), k -> new TreeMap<>())
+                        .put(threadCount, result);
+        }
+        printScaling(resultsByBenchmark);
+    }
+
+    /**
+     * Prints ops/s, the speed up over the fewest threads, and the bytes allocated per op, for each benchmark
+     * and thread count.
+     */
+    static void printScaling(Map<String, Map<Integer, RunResult>> resultsByBenchmark) {
+        System.out.println();
+        System.out.printf("%-50s %7s %16s %8s %12s%n", "Benchmark", "Threads", "ops/s", "Speedup", "B/op");
+        for (Map.Entry<String, Map<Integer, RunResult>> entry : resultsByBenchmark.entrySet()) {
+            // e.g. MyBenchmark.doubleMidPrice
+            String fullName = entry.getKey();
+            String name = fullName.substring(fullName.lastIndexOf('.', fullName.lastIndexOf('.') - 1) + 1);
+            double first = Double.NaN;
+            for (Map.Entry<Integer, RunResult> byThreads : entry.getValue().entrySet()) {
+                RunResult result = byThreads.getValue();
+                double score = result.getPrimaryResult().getScore();
+                if (Double.isNaN(first))
+                    first = score;
+                System.out.printf("%-50s %7d %,16.1f %7.2fx %,12.1f%n",
+                        name, byThreads.getKey(), score, score / first, allocatedPerOp(result));
+            }
+        }
+    }
 
-        new Runner(opt).run();
+    /**
+     * @return the bytes allocated per op from the {@link GCProfiler}, or NaN if it wasn't recorded.
+     */
+    static double allocatedPerOp(RunResult result) {
+        // matched by suffix, as some JMH versions, e.g. 1.36, prefix the label with a middle dot
+        for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet())
+            if (entry.getKey().endsWith("gc.alloc.rate.norm"))
+                return entry.getValue().getScore();
+        return Double.NaN;
     }
 }
@@ -0,0 +1,105 @@
+package blog.vanillajava.decimal;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+/**
+ * Compares rounding mid prices to 6 decimal places with {@link MyBenchmark#round6(double)},
+ * {@link DecimalRounding#round6(double)}, {@link DecimalRounding#roundShortest6(double)} and {@code BigDecimal},
+ * on the same prices as {@link MyBenchmark}.
+ *
+ * <p>{@code DecimalRounding} is always correct, but takes a slower path when a value is within an ulp of a
+ * half, so {@code -Dboundaries=true} uses values on the rounding boundaries instead, its worst case.</p>
+ *
+ * <p>In a quick run on a Xeon with Java 17, {@code round6} took 1.4 ns a value, and {@code DecimalRounding}
+ * 2.4 ns, or 5.0 ns with {@code -Dboundaries=true}. {@code roundShortest6} takes about the same time as
+ * {@code DecimalRounding.round6}.</p>
+ */
+@State(Scope.Thread)
+public class RoundingBenchmark {
+    static final int SIZE = Integer.getInteger("size", 1024);
+    static final boolean BOUNDARIES = Boolean.getBoolean("boundaries");
+
+    final double[] values = new double[SIZE];
+    final double[] rounded = new double[SIZE];
+
+    public RoundingBenchmark() {
+        Random rand = new Random(1);
+        for (int i = 0; i < SIZE; i++) {
+            int x = rand.nextInt(200000);
+            int y = rand.nextInt(10000);
+            values[i] = BOUNDARIES
+                    ? (x * 10 + 5) / 1e7
+                    : (x / 1e5 + (x + y) / 1e5) / 2;
+        }
+
+        for (int i = 0; i < SIZE; i++) {
+            double expected = new BigDecimal(values[i]).setScale(6, RoundingMode.HALF_UP).doubleValue();
+            if (DecimalRounding.round6(values[i]) != expected)
+                throw new AssertionError(values[i] + " " + expected);
+            double expectedShortest = BigDecimal.valueOf(values[i]).setScale(6, RoundingMode.HALF_UP).doubleValue();
+            if (DecimalRounding.roundShortest6(values[i]) != expectedShortest)
+                throw new AssertionError(values[i] + " " + expectedShortest);
+        }
+    }
+
+    /**
+     * Rounds with {@code (long) (x * 1e6 + 0.5) / 1e6}.
+     */
+    @Benchmark
+    public double[] round6() {
+        for (int i = 0; i < SIZE; i++)
+            rounded[i] = MyBenchmark.round6(values[i]);
+        return rounded;
+    }
+
+    /**
+     * Rounds with {@link DecimalRounding}.
+     */
+    @Benchmark
+    public double[] decimalRounding() {
+        for (int i = 0; i < SIZE; i++)
+            rounded[i] = DecimalRounding.round6(values[i]);
+        return rounded;
+    }
+
+    /**
+     * Rounds the shortest decimal with {@link DecimalRounding}.
+     */
+    @Benchmark
+    public double[] decimalRoundingShortest() {
+        for (int i = 0; i < SIZE; i++)
+            rounded[i] = DecimalRounding.roundShortest6(values[i]);
+        return rounded;
+    }
+
+    /**
+     * Rounds the exact value with {@code BigDecimal}, the reference.
+     */
+    @Benchmark
+    public double[] bigDecimalSetScale() {
+        for (int i = 0; i < SIZE; i++)
+            rounded[i] = new BigDecimal(values[i]).setScale(6, RoundingMode.HALF_UP).doubleValue();
+        return rounded;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        System.out.println("Rounding to 6 decimal places, with -Dsize=" + SIZE + " -Dboundaries=" + BOUNDARIES);
+        Options opt = new OptionsBuilder()
+                .include(".*" + RoundingBenchmark.class.getSimpleName() + ".*")
+                .jvmArgsAppend("-Dsize=" + SIZE, "-Dboundaries=" + BOUNDARIES)
+                .forks(3)
+                .build();
+
+        new Runner(opt).run();
+    }
+}
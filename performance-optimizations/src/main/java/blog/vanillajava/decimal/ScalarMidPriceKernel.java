@@ -0,0 +1,37 @@
+package blog.vanillajava.decimal;
+
+/**
+ * A {@link MidPriceKernel} using plain loops, for any JVM.
+ */
+public class ScalarMidPriceKernel implements MidPriceKernel {
+
+    @Override
+    public void mid(double[] ap, double[] bp, double[] mp, int length) {
+        for (int i = 0; i < length; i++)
+            mp[i] = (ap[i] + bp[i]) / 2;
+    }
+
+    @Override
+    public void roundedMid(double[] ap, double[] bp, double[] mp, int length) {
+        for (int i = 0; i < length; i++)
+            mp[i] = MyBenchmark.round6((ap[i] + bp[i]) / 2);
+    }
+
+    @Override
+    public void spread(double[] ap, double[] bp, double[] sp, int length) {
+        for (int i = 0; i < length; i++)
+            sp[i] = ap[i] - bp[i];
+    }
+
+    @Override
+    public void mid(long[] ap, long[] bp, long[] mp, int length) {
+        for (int i = 0; i < length; i++)
+            mp[i] = FixedPrice.mid(ap[i], bp[i]);
+    }
+
+    @Override
+    public void spread(long[] ap, long[] bp, long[] sp, int length) {
+        for (int i = 0; i < length; i++)
+            sp[i] = FixedPrice.subtract(ap[i], bp[i]);
+    }
+}
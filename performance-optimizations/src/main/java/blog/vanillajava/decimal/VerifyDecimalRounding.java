@@ -0,0 +1,145 @@
+package blog.vanillajava.decimal;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+/**
+ * Checks {@link DecimalRounding#round(double, int)} against {@code new BigDecimal(x).setScale(decimals,
+ * RoundingMode.HALF_UP)} and {@link DecimalRounding#roundShortest(double, int)} against
+ * {@code BigDecimal.valueOf(x).setScale(decimals, RoundingMode.HALF_UP)}, and counts how often
+ * {@link MyBenchmark#round6(double)} differs, for comparison.
+ *
+ * <p>Each value is rounded to 0 to {@value #MAX_DECIMALS} decimal places in turn. The corpora are:</p>
+ * <ul>
+ *   <li>prices, as in {@link MyBenchmark}, and their mid prices,</li>
+ *   <li>random values from 1e-10 to 1e12 of either sign,</li>
+ *   <li>boundaries, the nearest double to a half at the last decimal place, and the doubles either side,</li>
+ *   <li>random bit patterns, covering very large and small values, NaN and infinities.</li>
+ * </ul>
+ *
+ * <p>The mid price corpus takes the mid of two random prices with 6 decimal places, {@code (a + b) / 2}, and
+ * rounds it to 6 decimal places. As well as the checks above, it counts how often each way of rounding differs
+ * from the mid worked out in {@code BigDecimal}, as {@code MyBenchmark} does. Some mids differ from it whichever
+ * way they are rounded, as {@code a + b} is rounded to a {@code double} before it is halved.</p>
+ *
+ * <p>Run with {@code -Dcount=} the number of values per corpus, 10 million by default, and {@code -Dseed=}.</p>
+ */
+public class VerifyDecimalRounding {
+
+    static final int COUNT = Integer.getInteger("count", 10_000_000);
+    static final long SEED = Long.getLong("seed", 1);
+    static final int MAX_DECIMALS = 12;
+
+    public static void main(String[] args) {
+        Random rand = new Random(SEED);
+        long failures = 0;
+        failures += check("prices", rand, (r, decimals) -> {
+            int x = r.nextInt(200000);
+            int y = r.nextInt(10000);
+            return r.nextBoolean() ? x / 1e5 : (x / 1e5 + (x + y) / 1e5) / 2;
+        });
+        failures += check("random", rand, (r, decimals) -> {
+            double x = r.nextDouble() * Math.pow(10, r.nextInt(22) - 10);
+            return r.nextBoolean() ? x : -x;
+        });
+        failures += check("boundaries", rand, (r, decimals) -> {
+            long k = r.nextLong() >>> (14 + r.nextInt(50));
+            double x = (k + 0.5) / Math.pow(10, decimals);
+            for (int i = r.nextInt(7) - 3; i < 0; i++)
+                x = Math.nextDown(x);
+            for (int i = r.nextInt(4); i > 0; i--)
+                x = Math.nextUp(x);
+            return r.nextBoolean() ? x : -x;
+        });
+        failures += check("bit patterns", rand, (r, decimals) -> Double.longBitsToDouble(r.nextLong()));
+        failures += checkMidPrices(rand);
+        if (failures > 0)
+            throw new AssertionError(failures + " values rounded incorrectly");
+        System.out.println("All values rounded correctly");
+    }
+
+    interface Corpus {
+        /**
+         * @param decimals the decimal places the value will be rounded to.
+         */
+        double next(Random rand, int decimals);
+    }
+
+    static long check(String name, Random rand, Corpus corpus) {
+        long failures = 0, round6Differs = 0, round6Checked = 0;
+        for (int i = 0; i < COUNT; i++) {
+            int decimals = i % (MAX_DECIMALS + 1);
+            double x = corpus.next(rand, decimals);
+            failures += checkOne(x, decimals, failures);
+
+            if (decimals == 6 && Math.abs(x) < 1e12) {
+                round6Checked++;
+                if (MyBenchmark.round6(x) != expected(x, 6))
+                    round6Differs++;
+            }
+        }
+        System.out.printf("%s: %,d values, %,d incorrect, round6 differs for %,d of %,d at 6 decimal places%n",
+                name, COUNT, failures, round6Differs, round6Checked);
+        return failures;
+    }
+
+    /**
+     * Compares both ways of rounding with {@code BigDecimal}, printing the first few failures.
+     *
+     * @return the number of ways {@code x} was rounded incorrectly.
+     */
+    static int checkOne(double x, int decimals, long failuresSoFar) {
+        int failures = 0;
+        double expected = expected(x, decimals);
+        double actual = DecimalRounding.round(x, decimals);
+        if (Double.doubleToLongBits(actual) != Double.doubleToLongBits(expected)) {
+            if (failuresSoFar + failures < 10)
+                System.out.println("round(" + x + ", " + decimals + ") = " + actual + " expected " + expected);
+            failures++;
+        }
+
+        expected = expectedShortest(x, decimals);
+        actual = DecimalRounding.roundShortest(x, decimals);
+        if (Double.doubleToLongBits(actual) != Double.doubleToLongBits(expected)) {
+            if (failuresSoFar + failures < 10)
+                System.out.println("roundShortest(" + x + ", " + decimals + ") = " + actual + " expected " + expected);
+            failures++;
+        }
+        return failures;
+    }
+
+    static long checkMidPrices(Random rand) {
+        long failures = 0, round6Differs = 0, exactDiffers = 0, shortestDiffers = 0;
+        for (int i = 0; i < COUNT; i++) {
+            long a = rand.nextInt(200_000_000), b = rand.nextInt(200_000_000);
+            double mid = (a / 1e6 + b / 1e6) / 2;
+            failures += checkOne(mid, 6, failures);
+
+            double decimalMid = BigDecimal.valueOf(a / 1e6).add(BigDecimal.valueOf(b / 1e6))
+                    .divide(MyBenchmark.TWO, 6, RoundingMode.HALF_UP).doubleValue();
+            if (MyBenchmark.round6(mid) != decimalMid)
+                round6Differs++;
+            if (DecimalRounding.round6(mid) != decimalMid)
+                exactDiffers++;
+            if (DecimalRounding.roundShortest6(mid) != decimalMid)
+                shortestDiffers++;
+        }
+        System.out.printf("mid prices: %,d values, %,d incorrect, differ from the BigDecimal mid for round6 %,d, " +
+                        "DecimalRounding.round6 %,d, DecimalRounding.roundShortest6 %,d%n",
+                COUNT, failures, round6Differs, exactDiffers, shortestDiffers);
+        return failures;
+    }
+
+    static double expected(double x, int decimals) {
+        if (Double.isNaN(x) || Double.isInfinite(x))
+            return x;
+        return new BigDecimal(x).setScale(decimals, RoundingMode.HALF_UP).doubleValue();
+    }
+
+    static double expectedShortest(double x, int decimals) {
+        if (Double.isNaN(x) || Double.isInfinite(x))
+            return x;
+        return BigDecimal.valueOf(x).setScale(decimals, RoundingMode.HALF_UP).doubleValue();
+    }
+}
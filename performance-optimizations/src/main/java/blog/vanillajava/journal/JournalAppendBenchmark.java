@@ -0,0 +1,94 @@
+package blog.vanillajava.journal;
+
+import blog.vanillajava.slowfile.SlowFileIO;
+import blog.vanillajava.triviallycopyable.MarketDataFlyweight;
+import blog.vanillajava.triviallycopyable.TriviallyCopyableMarketData;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+/**
+ * A benchmark for sustained appends to a {@link MarketDataJournal}, printed in the same form as
+ * {@code SlowFileIO} so the two can be compared.
+ *
+ * <p>It appends about 2 GB of records, reads them back by tailing the journal, and reports how many
+ * bytes were allocated while appending.</p>
+ */
+public class JournalAppendBenchmark {
+
+    private static final long FILE_SIZE_IN_BYTES = Long.getLong("size", 2_000_000_000L); // 2 GB
+    private static final int RECORDS_PER_FILE = Integer.getInteger("recordsPerFile", 1 << 20);
+    public static final String DIR_NAME = "deleteme.journal";
+
+    public static void main(String[] args) {
+        File directory = new File(SlowFileIO.determineWorkingDirectory(), DIR_NAME);
+        long records = FILE_SIZE_IN_BYTES / MarketDataFlyweight.recordLength();
+
+        for (int run = 1; run <= 3; run++) {
+            deleteDir(directory);
+            runAppendReadBenchmark(directory, records, run);
+        }
+        deleteDir(directory);
+    }
+
+    /**
+     * Runs a single benchmark iteration to measure append and read speeds.
+     *
+     * @param dir     the directory to hold the journal
+     * @param records the number of records to append
+     * @param run     the run number for benchmarking
+     */
+    private static void runAppendReadBenchmark(File dir, long records, int run) {
+        TriviallyCopyableMarketData data = new TriviallyCopyableMarketData();
+        data.bidPrice0(1.0);
+        long bytes = records * MarketDataFlyweight.recordLength();
+        double sum = 0;
+        long start, mid, end, allocated;
+
+        try (MarketDataJournal journal = new MarketDataJournal(dir, RECORDS_PER_FILE);
+             MarketDataJournal.Reader reader = journal.reader()) {
+            // Measure append performance
+            long allocatedStart = allocatedBytes();
+            start = System.nanoTime();
+            for (long i = 0; i < records; i++)
+                journal.append(data);
+            mid = System.nanoTime();
+            allocated = allocatedBytes() - allocatedStart;
+
+            // Measure read performance
+            while (reader.next())
+                sum += reader.flyweight().bidPrice0();
+            end = System.nanoTime();
+            // Each record has a bidPrice0 of 1.0
+            if (sum != records)
+                throw new AssertionError("Record count mismatch: expected " + records + " but read " + sum);
+        }
+
+        // bytes per nanosecond == GB/second
+        System.out.printf("Run %d, Append speed: %.3f GB/sec, read speed %.3f GB/sec, allocated %,d bytes while appending%n",
+                run,
+                (double) bytes / (mid - start),
+                (double) bytes / (end - mid),
+                allocated);
+    }
+
+    /**
+     * @return the bytes allocated by this thread so far, or 0 if this JVM doesn't support measuring it.
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean)
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        return 0;
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null)
+            for (File file : files)
+                if (!file.delete())
+                    System.err.println("Warning: Failed to delete " + file);
+        if (dir.exists() && !dir.delete())
+            System.err.println("Warning: Failed to delete " + dir);
+    }
+}
@@ -0,0 +1,250 @@
+package blog.vanillajava.journal;
+
+import blog.vanillajava.triviallycopyable.MarketDataFlyweight;
+import blog.vanillajava.triviallycopyable.TriviallyCopyableMarketData;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.bytes.MappedBytes;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * An append-only journal of {@link TriviallyCopyableMarketData} records in rolling memory-mapped files.
+ *
+ * <p>As every record is the same length, the file format is a fixed stride and a record can be
+ * found by index without an index file. Each file has a {@value #HEADER_LENGTH} byte header,
+ * holding the number of records committed to that file, followed by {@code recordsPerFile} records.
+ * The count is written with an ordered write after the record, so a reader which sees the
+ * count also sees the record, whether it is in the same process or another one.</p>
+ *
+ * <p>Appending copies the record into the mapped file and produces no garbage, except when rolling
+ * to a new file. Reading is done through a {@link MarketDataFlyweight} pointing into the mapped
+ * file, so it doesn't copy the record either.</p>
+ *
+ * <p>There should only be one appending thread for a journal. Each reading thread should use its own
+ * {@link Reader}.</p>
+ */
+public final class MarketDataJournal implements Closeable {
+
+    /**
+     * The length of the header at the start of each file, a cache line so the records don't share it.
+     */
+    static final int HEADER_LENGTH = 64;
+
+    /**
+     * The offset of the committed record count in the header.
+     */
+    static final int COUNT_OFFSET = 0;
+
+    static final String SUFFIX = ".journal";
+
+    private final File dir;
+    private final int recordsPerFile;
+    private final long fileSize;
+
+    private MappedBytes appendBytes;
+    private long appendCycle = -1;
+    private int appendSlot;
+
+    /**
+     * Opens a journal in the given directory, resuming from the last record if it already exists.
+     *
+     * @param dir            the directory to hold the journal files.
+     * @param recordsPerFile the number of records in each file before rolling to the next.
+     */
+    public MarketDataJournal(File dir, int recordsPerFile) {
+        if (recordsPerFile <= 0)
+            throw new IllegalArgumentException("recordsPerFile must be positive, was " + recordsPerFile);
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new UncheckedIOException(new IOException("Unable to create " + dir));
+        this.dir = dir;
+        this.recordsPerFile = recordsPerFile;
+        this.fileSize = HEADER_LENGTH + (long) recordsPerFile * MarketDataFlyweight.recordLength();
+        long lastCycle = lastCycle();
+        if (lastCycle >= 0) {
+            appendCycle = lastCycle;
+            appendBytes = map(lastCycle);
+            appendSlot = (int) appendBytes.bytesStore().readVolatileLong(COUNT_OFFSET);
+        }
+    }
+
+    /**
+     * Appends a record to the journal.
+     *
+     * @param data the record to append.
+     * @return the index of the record appended.
+     */
+    public long append(TriviallyCopyableMarketData data) {
+        if (appendBytes == null || appendSlot == recordsPerFile)
+            roll();
+        int slot = appendSlot;
+        appendBytes.writePosition(HEADER_LENGTH + (long) slot * MarketDataFlyweight.recordLength());
+        data.writeMarshallable(appendBytes);
+        // Publish the record only after it has been written
+        appendBytes.bytesStore().writeOrderedLong(COUNT_OFFSET, ++appendSlot);
+        return appendCycle * recordsPerFile + slot;
+    }
+
+    /**
+     * @return the number of records appended, as seen by the appender.
+     */
+    public long size() {
+        return appendCycle < 0 ? 0 : appendCycle * recordsPerFile + appendSlot;
+    }
+
+    /**
+     * @return a new reader, initially positioned before the first record.
+     */
+    public Reader reader() {
+        return new Reader();
+    }
+
+    /**
+     * Releases the current mapping of the appender. Readers must be closed separately.
+     */
+    @Override
+    public void close() {
+        if (appendBytes != null) {
+            appendBytes.releaseLast();
+            appendBytes = null;
+        }
+    }
+
+    private void roll() {
+        close();
+        appendCycle++;
+        appendBytes = map(appendCycle);
+        appendSlot = (int) appendBytes.bytesStore().readVolatileLong(COUNT_OFFSET);
+    }
+
+    File file(long cycle) {
+        return new File(dir, String.format("%09d%s", cycle, SUFFIX));
+    }
+
+    private MappedBytes map(long cycle) {
+        try {
+            return MappedBytes.singleMappedBytes(file(cycle), fileSize);
+        } catch (FileNotFoundException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long lastCycle() {
+        long last = -1;
+        String[] names = dir.list();
+        if (names == null)
+            return last;
+        for (String name : names) {
+            if (!name.endsWith(SUFFIX))
+                continue;
+            try {
+                last = Math.max(last, Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+            } catch (NumberFormatException ignored) {
+                // not one of ours
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Reads records by index, or tails the journal as records are appended.
+     *
+     * <p>A reader maps one file at a time and releases the previous mapping when it moves to another
+     * file. The {@link #flyweight()} is only valid until the reader moves to another file or is closed.</p>
+     */
+    public final class Reader implements Closeable {
+        private final MarketDataFlyweight flyweight = new MarketDataFlyweight();
+        private MappedBytes bytes;
+        private BytesStore<?, ?> store;
+        private long cycle = -1;
+        private long index = -1;
+        // a file mapped before it has a committed record to move to, kept to avoid remapping it while tailing
+        private MappedBytes pendingBytes;
+        private long pendingCycle = -1;
+
+        /**
+         * Moves to the record at the given index if it has been committed.
+         *
+         * @param index the index of the record.
+         * @return {@code true} if the record is available, otherwise the reader is left where it was.
+         */
+        public boolean moveToIndex(long index) {
+            if (index < 0)
+                return false;
+            long indexCycle = index / recordsPerFile;
+            int slot = (int) (index - indexCycle * recordsPerFile);
+            if (indexCycle != cycle) {
+                if (indexCycle != pendingCycle) {
+                    if (!file(indexCycle).exists())
+                        return false;
+                    releasePending();
+                    pendingBytes = map(indexCycle);
+                    pendingCycle = indexCycle;
+                }
+                // the current mapping, which the flyweight may wrap, is kept until the move succeeds
+                if (slot >= pendingBytes.bytesStore().readVolatileLong(COUNT_OFFSET))
+                    return false;
+                release();
+                bytes = pendingBytes;
+                store = bytes.bytesStore();
+                cycle = indexCycle;
+                pendingBytes = null;
+                pendingCycle = -1;
+            } else if (slot >= store.readVolatileLong(COUNT_OFFSET)) {
+                return false;
+            }
+            flyweight.wrap(store, HEADER_LENGTH + (long) slot * MarketDataFlyweight.recordLength());
+            this.index = index;
+            return true;
+        }
+
+        /**
+         * Moves to the next record, for tailing the journal.
+         *
+         * @return {@code true} if there was a next record, or {@code false} if the reader has caught up.
+         */
+        public boolean next() {
+            return moveToIndex(index + 1);
+        }
+
+        /**
+         * @return the index of the current record, or -1 if the reader hasn't read a record yet.
+         */
+        public long index() {
+            return index;
+        }
+
+        /**
+         * @return the flyweight over the current record.
+         */
+        public MarketDataFlyweight flyweight() {
+            return flyweight;
+        }
+
+        private void release() {
+            if (bytes != null) {
+                bytes.releaseLast();
+                bytes = null;
+                store = null;
+                cycle = -1;
+            }
+        }
+
+        private void releasePending() {
+            if (pendingBytes != null) {
+                pendingBytes.releaseLast();
+                pendingBytes = null;
+                pendingCycle = -1;
+            }
+        }
+
+        @Override
+        public void close() {
+            release();
+            releasePending();
+        }
+    }
+}
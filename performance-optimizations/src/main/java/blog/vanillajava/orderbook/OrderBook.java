@@ -0,0 +1,207 @@
+package blog.vanillajava.orderbook;
+
+import blog.vanillajava.triviallycopyable.MarketData;
+
+import java.util.Arrays;
+
+/**
+ * A price-level (L2) order book for one security, holding the quantity at each price in primitive arrays
+ * indexed by the number of ticks above a base price.
+ *
+ * <p>An update is an array store plus, when the best price changes, a scan to the next non-empty level,
+ * with no boxing, no tree and no allocation. The cost is memory for every tick in the range, whether or not
+ * it has an order, and the range must be chosen up front; a price outside it is rejected.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public final class OrderBook {
+
+    /**
+     * The side of the book an update applies to.
+     */
+    public enum Side {
+        BID, ASK
+    }
+
+    /**
+     * The number of levels of the book held in {@link MarketData}.
+     */
+    public static final int LEVELS = 4;
+
+    private final long securityId;
+    private final double ticksPerUnit;
+    private final long baseTick;
+    private final int[] bidQty;
+    private final int[] askQty;
+    // index of the best price, or -1 / the length of the array when that side is empty
+    private int bestBid = -1;
+    private int bestAsk;
+    // the lowest bid and highest ask ever set, so a snapshot of a thin book doesn't scan the whole array
+    private int bidFloor;
+    private int askCeiling = -1;
+    private long time;
+
+    /**
+     * @param securityId the security, typically a {@code @ShortText} encoded name.
+     * @param tickSize   the smallest price increment.
+     * @param minPrice   the lowest price the book can hold.
+     * @param ticks      the number of price levels from {@code minPrice}.
+     */
+    public OrderBook(long securityId, double tickSize, double minPrice, int ticks) {
+        if (!(tickSize > 0))
+            throw new IllegalArgumentException("tickSize must be positive, was " + tickSize);
+        if (ticks <= 0)
+            throw new IllegalArgumentException("ticks must be positive, was " + ticks);
+        this.securityId = securityId;
+        double perUnit = 1 / tickSize;
+        // 1 / 0.0001 isn't exactly 10000, which would make every price slightly off
+        this.ticksPerUnit = Math.abs(perUnit - Math.rint(perUnit)) < 1e-6 ? Math.rint(perUnit) : perUnit;
+        this.baseTick = Math.round(minPrice * ticksPerUnit);
+        this.bidQty = new int[ticks];
+        this.askQty = new int[ticks];
+        this.bestAsk = ticks;
+        this.bidFloor = ticks;
+    }
+
+    /**
+     * Sets the total quantity at a price level, replacing any previous quantity.
+     *
+     * @param side  the side of the book.
+     * @param price the price of the level.
+     * @param qty   the total quantity at that price, or 0 to remove the level.
+     * @param time  the time of the update, reported in the next snapshot.
+     * @throws IllegalArgumentException if the price is outside the range of the book, or the quantity is negative.
+     */
+    public void apply(Side side, double price, int qty, long time) {
+        int index = indexOf(price);
+        if (qty < 0)
+            throw new IllegalArgumentException("qty must not be negative, was " + qty);
+        this.time = time;
+        if (side == Side.BID)
+            applyBid(index, qty);
+        else
+            applyAsk(index, qty);
+    }
+
+    private int indexOf(double price) {
+        long index = Math.round(price * ticksPerUnit) - baseTick;
+        if (index < 0 || index >= bidQty.length)
+            throw new IllegalArgumentException("price " + price + " is outside the book for " + securityId);
+        return (int) index;
+    }
+
+    private void applyBid(int index, int qty) {
+        bidQty[index] = qty;
+        if (qty > 0) {
+            if (index > bestBid)
+                bestBid = index;
+            if (index < bidFloor)
+                bidFloor = index;
+        } else if (index == bestBid) {
+            int i = index - 1;
+            while (i >= bidFloor && bidQty[i] == 0)
+                i--;
+            bestBid = i < bidFloor ? -1 : i;
+        }
+    }
+
+    private void applyAsk(int index, int qty) {
+        askQty[index] = qty;
+        if (qty > 0) {
+            if (index < bestAsk)
+                bestAsk = index;
+            if (index > askCeiling)
+                askCeiling = index;
+        } else if (index == bestAsk) {
+            int i = index + 1;
+            while (i <= askCeiling && askQty[i] == 0)
+                i++;
+            bestAsk = i > askCeiling ? askQty.length : i;
+        }
+    }
+
+    /**
+     * Copies the top {@link #LEVELS} levels of each side into {@code md}. Missing levels have a price and
+     * quantity of zero.
+     *
+     * @param md the market data to overwrite.
+     * @return {@code md}.
+     */
+    public MarketData snapshot(MarketData md) {
+        md.securityId(securityId).time(time);
+
+        int b = bestBid, floor = bidFloor;
+        md.bidQty0(b < floor ? 0 : bidQty[b]).bidPrice0(bidPrice(b, floor));
+        do b--; while (b >= floor && bidQty[b] == 0);
+        md.bidQty1(b < floor ? 0 : bidQty[b]).bidPrice1(bidPrice(b, floor));
+        do b--; while (b >= floor && bidQty[b] == 0);
+        md.bidQty2(b < floor ? 0 : bidQty[b]).bidPrice2(bidPrice(b, floor));
+        do b--; while (b >= floor && bidQty[b] == 0);
+        md.bidQty3(b < floor ? 0 : bidQty[b]).bidPrice3(bidPrice(b, floor));
+
+        int a = bestAsk, ceiling = askCeiling;
+        md.askQty0(a > ceiling ? 0 : askQty[a]).askPrice0(askPrice(a, ceiling));
+        do a++; while (a <= ceiling && askQty[a] == 0);
+        md.askQty1(a > ceiling ? 0 : askQty[a]).askPrice1(askPrice(a, ceiling));
+        do a++; while (a <= ceiling && askQty[a] == 0);
+        md.askQty2(a > ceiling ? 0 : askQty[a]).askPrice2(askPrice(a, ceiling));
+        do a++; while (a <= ceiling && askQty[a] == 0);
+        md.askQty3(a > ceiling ? 0 : askQty[a]).askPrice3(askPrice(a, ceiling));
+        return md;
+    }
+
+    private double bidPrice(int index, int floor) {
+        return index < floor ? 0 : priceOf(index);
+    }
+
+    private double askPrice(int index, int ceiling) {
+        return index > ceiling ? 0 : priceOf(index);
+    }
+
+    private double priceOf(int index) {
+        // divide rather than multiply by the tick size, so 3 ticks of 0.1 gives 0.3 not 0.30000000000000004
+        return (baseTick + index) / ticksPerUnit;
+    }
+
+    /**
+     * @return the quantity at a price, or 0 if there is none.
+     */
+    public int qtyAt(Side side, double price) {
+        int index = indexOf(price);
+        return side == Side.BID ? bidQty[index] : askQty[index];
+    }
+
+    /**
+     * @return the highest bid price, or {@link Double#NaN} if there are no bids.
+     */
+    public double bestBid() {
+        return bestBid < 0 ? Double.NaN : priceOf(bestBid);
+    }
+
+    /**
+     * @return the lowest ask price, or {@link Double#NaN} if there are no asks.
+     */
+    public double bestAsk() {
+        return bestAsk >= askQty.length ? Double.NaN : priceOf(bestAsk);
+    }
+
+    /**
+     * @return the security of this book.
+     */
+    public long securityId() {
+        return securityId;
+    }
+
+    /**
+     * Removes every level, keeping the arrays.
+     */
+    public void clear() {
+        Arrays.fill(bidQty, 0);
+        Arrays.fill(askQty, 0);
+        bestBid = -1;
+        bestAsk = askQty.length;
+        bidFloor = bidQty.length;
+        askCeiling = -1;
+        time = 0;
+    }
+}
@@ -0,0 +1,99 @@
+package blog.vanillajava.orderbook;
+
+import blog.vanillajava.triviallycopyable.MarketData;
+import blog.vanillajava.triviallycopyable.TriviallyCopyableMarketData;
+import net.openhft.chronicle.wire.ShortTextLongConverter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+
+import static java.util.concurrent.TimeUnit.*;
+
+/**
+ * Benchmarks the {@link OrderBookEngine} applying updates, as updates per second, and producing a top of
+ * book {@link MarketData} snapshot, in nanoseconds.
+ *
+ * <p>The updates are generated up front, spread across {@code securities} books, each around a fixed mid
+ * price with one in five removing a level. With more securities, fewer books fit in the CPU caches.</p>
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, warmups = 1)
+@Warmup(iterations = 5, time = 200, timeUnit = MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = MILLISECONDS)
+public class OrderBookBenchmark {
+
+    static final int UPDATES = 1 << 16;
+    static final int TICKS = 1024;
+    static final double TICK_SIZE = 0.01;
+    static final double MIN_PRICE = 90.0;
+
+    @Param({"1", "1000", "10000"})
+    int securities;
+
+    private OrderBookEngine engine;
+    private long[] securityIds;
+    private long[] updateSecurity;
+    private OrderBook.Side[] updateSide;
+    private double[] updatePrice;
+    private int[] updateQty;
+    private int next;
+    private final MarketData snapshot = new TriviallyCopyableMarketData();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        engine = new OrderBookEngine(securities);
+        securityIds = new long[securities];
+        for (int s = 0; s < securities; s++) {
+            securityIds[s] = ShortTextLongConverter.INSTANCE.parse("SEC" + s);
+            engine.addSecurity(securityIds[s], TICK_SIZE, MIN_PRICE, TICKS);
+        }
+
+        updateSecurity = new long[UPDATES];
+        updateSide = new OrderBook.Side[UPDATES];
+        updatePrice = new double[UPDATES];
+        updateQty = new int[UPDATES];
+        int midTick = TICKS / 2;
+        for (int i = 0; i < UPDATES; i++) {
+            updateSecurity[i] = securityIds[random.nextInt(securities)];
+            boolean bid = random.nextBoolean();
+            // within 50 ticks of the mid, bids below and asks above
+            int offset = 1 + random.nextInt(50);
+            int tick = bid ? midTick - offset : midTick + offset;
+            updateSide[i] = bid ? OrderBook.Side.BID : OrderBook.Side.ASK;
+            updatePrice[i] = MIN_PRICE + tick * TICK_SIZE;
+            updateQty[i] = random.nextInt(5) == 0 ? 0 : 100 * (1 + random.nextInt(100));
+        }
+        // Fill the books so the snapshots have levels to copy
+        for (int i = 0; i < UPDATES; i++)
+            update();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(SECONDS)
+    public OrderBook update() {
+        int i = next++ & (UPDATES - 1);
+        return engine.apply(updateSecurity[i], updateSide[i], updatePrice[i], updateQty[i], i);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(NANOSECONDS)
+    public MarketData snapshot() {
+        int i = next++ & (UPDATES - 1);
+        return engine.snapshot(updateSecurity[i], snapshot);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + OrderBookBenchmark.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,103 @@
+package blog.vanillajava.orderbook;
+
+import blog.vanillajava.collections.LongObjectHashMap;
+import blog.vanillajava.triviallycopyable.MarketData;
+import net.openhft.chronicle.wire.ShortTextLongConverter;
+
+/**
+ * Maintains an {@link OrderBook} per security, applying incremental updates and producing
+ * {@link MarketData} snapshots of the top {@link OrderBook#LEVELS} levels.
+ *
+ * <p>Securities are keyed by their {@code @ShortText} {@code securityId}, a {@code long}, in a
+ * {@link LongObjectHashMap}, so finding a book neither boxes the key nor allocates.
+ * Books are added up front with {@link #addSecurity}, as each allocates its price arrays.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public final class OrderBookEngine {
+
+    private final LongObjectHashMap<OrderBook> books;
+
+    /**
+     * @param expectedSecurities the number of securities to size the table for.
+     */
+    public OrderBookEngine(int expectedSecurities) {
+        books = new LongObjectHashMap<>(expectedSecurities);
+    }
+
+    /**
+     * Adds a security with an empty book.
+     *
+     * @param securityId the {@code @ShortText} encoded security.
+     * @param tickSize   the smallest price increment.
+     * @param minPrice   the lowest price the book can hold.
+     * @param ticks      the number of price levels from {@code minPrice}.
+     * @return the new book.
+     * @throws IllegalArgumentException if the security has already been added.
+     */
+    public OrderBook addSecurity(long securityId, double tickSize, double minPrice, int ticks) {
+        if (books.containsKey(securityId))
+            throw new IllegalArgumentException("Security " + toText(securityId) + " already added");
+        OrderBook book = new OrderBook(securityId, tickSize, minPrice, ticks);
+        books.put(securityId, book);
+        return book;
+    }
+
+    /**
+     * Adds a security by name, e.g. {@code "EURUSD"}, of up to 10 characters.
+     *
+     * @see #addSecurity(long, double, double, int)
+     */
+    public OrderBook addSecurity(CharSequence name, double tickSize, double minPrice, int ticks) {
+        return addSecurity(ShortTextLongConverter.INSTANCE.parse(name), tickSize, minPrice, ticks);
+    }
+
+    /**
+     * @param securityId the {@code @ShortText} encoded security.
+     * @return the book for the security, or {@code null} if it hasn't been added.
+     */
+    public OrderBook book(long securityId) {
+        return books.get(securityId);
+    }
+
+    /**
+     * Sets the total quantity at a price level of a security.
+     *
+     * @return the book updated.
+     * @throws IllegalArgumentException if the security hasn't been added or the price is outside its book.
+     * @see OrderBook#apply
+     */
+    public OrderBook apply(long securityId, OrderBook.Side side, double price, int qty, long time) {
+        OrderBook book = bookFor(securityId);
+        book.apply(side, price, qty, time);
+        return book;
+    }
+
+    /**
+     * Copies the top levels of a security's book into {@code md}.
+     *
+     * @return {@code md}.
+     * @throws IllegalArgumentException if the security hasn't been added.
+     */
+    public MarketData snapshot(long securityId, MarketData md) {
+        return bookFor(securityId).snapshot(md);
+    }
+
+    private OrderBook bookFor(long securityId) {
+        OrderBook book = book(securityId);
+        if (book == null)
+            throw new IllegalArgumentException("Unknown security " + toText(securityId));
+        return book;
+    }
+
+    private static String toText(long securityId) {
+        return ShortTextLongConverter.INSTANCE.asString(securityId);
+    }
+
+    /**
+     * @return the number of securities.
+     */
+    public int size() {
+        return books.size();
+    }
+}
@@ -0,0 +1,163 @@
+package blog.vanillajava.slowfile;
+
+import net.openhft.chronicle.core.util.Histogram;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Writes to a file from one thread without making any system calls on it, by filling one of two direct
+ * buffers while a background thread writes the other to the file.
+ *
+ * <p>A full buffer is handed to the flusher through an {@link AtomicReference}, and the flusher hands it
+ * back, empty, through another. Neither side takes a lock. If the writer fills its buffer before the
+ * flusher has handed back the other one, both buffers are full and the writer spins until the flusher
+ * catches up; this backpressure is counted by {@link #stalls()}.</p>
+ *
+ * <p>The time each {@link #write(byte[])} takes is recorded in {@link #latency()}.</p>
+ *
+ * <p>{@code write} must only be called by one thread. An error writing the file is thrown by the next
+ * {@code write} or {@link #close()}.</p>
+ */
+public class AsyncFileWriter implements Closeable {
+
+    private final FileChannel channel;
+    private final Thread flusher;
+    // writer to flusher
+    private final AtomicReference<ByteBuffer> full = new AtomicReference<>();
+    // flusher to writer
+    private final AtomicReference<ByteBuffer> free = new AtomicReference<>();
+    private final Histogram latency = new Histogram();
+    private volatile boolean closed;
+    private volatile IOException error;
+
+    // writer side
+    private ByteBuffer active;
+    private long stalls;
+
+    /**
+     * @param file       the file to write, replacing it if it exists.
+     * @param bufferSize the size of each of the two buffers.
+     * @throws IOException if the file can't be opened.
+     */
+    public AsyncFileWriter(File file, int bufferSize) throws IOException {
+        channel = FileChannel.open(file.toPath(), CREATE, WRITE, TRUNCATE_EXISTING);
+        active = ByteBuffer.allocateDirect(bufferSize);
+        free.set(ByteBuffer.allocateDirect(bufferSize));
+        flusher = new Thread(this::flushLoop, "async-file-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Copies {@code bytes} to the current buffer, handing the buffer to the flusher first if it is full.
+     *
+     * @param bytes the bytes to write.
+     * @throws IOException if an earlier write to the file failed.
+     */
+    public void write(byte[] bytes) throws IOException {
+        long start = System.nanoTime();
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!active.hasRemaining())
+                swap();
+            int length = Math.min(active.remaining(), bytes.length - offset);
+            active.put(bytes, offset, length);
+            offset += length;
+        }
+        latency.sampleNanos(System.nanoTime() - start);
+    }
+
+    /**
+     * Hands the active buffer to the flusher and takes the free one, waiting for it if both are full.
+     */
+    private void swap() throws IOException {
+        ByteBuffer next;
+        boolean stalled = false;
+        while ((next = free.getAndSet(null)) == null) {
+            checkError();
+            stalled = true;
+            Thread.yield();
+        }
+        if (stalled)
+            stalls++;
+        checkError();
+        active.flip();
+        // the flusher has taken the previous full buffer, as it returns it only after writing it
+        full.lazySet(active);
+        active = next;
+    }
+
+    private void flushLoop() {
+        try {
+            while (true) {
+                ByteBuffer buffer = full.getAndSet(null);
+                if (buffer == null) {
+                    // close() publishes the last buffer before setting closed
+                    if (closed && (buffer = full.getAndSet(null)) == null)
+                        break;
+                    if (buffer == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                }
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                buffer.clear();
+                free.lazySet(buffer);
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    private void checkError() throws IOException {
+        IOException e = error;
+        if (e != null)
+            throw new IOException("Background write failed", e);
+    }
+
+    /**
+     * @return the time each {@link #write(byte[])} took, in nanoseconds.
+     */
+    public Histogram latency() {
+        return latency;
+    }
+
+    /**
+     * @return the number of times the writer waited because both buffers were full.
+     */
+    public long stalls() {
+        return stalls;
+    }
+
+    /**
+     * Writes what is left in the buffers and closes the file.
+     *
+     * @throws IOException if a write to the file failed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        try {
+            if (active.position() > 0)
+                swap();
+            closed = true;
+            flusher.join();
+            checkError();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for the flusher", e);
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+}
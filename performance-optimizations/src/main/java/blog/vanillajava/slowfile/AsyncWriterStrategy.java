@@ -0,0 +1,35 @@
+package blog.vanillajava.slowfile;
+
+import net.openhft.chronicle.core.util.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes each line with an {@link AsyncFileWriter}, so the writing thread only copies bytes, and prints
+ * how long each write took.
+ */
+public class AsyncWriterStrategy implements WriteStrategy {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    @Override
+    public String name() {
+        return "async";
+    }
+
+    @Override
+    public void write(File file, byte[] line, long lines) throws IOException {
+        try (AsyncFileWriter writer = new AsyncFileWriter(file, BUFFER_SIZE)) {
+            for (long i = 0; i < lines; i++)
+                writer.write(line);
+            Histogram latency = writer.latency();
+            System.out.printf("async enqueue latency ns: p50 %,.0f, p99 %,.0f, p99.99 %,.0f, worst %,.0f, stalls %,d%n",
+                    latency.percentile(0.50),
+                    latency.percentile(0.99),
+                    latency.percentile(0.9999),
+                    latency.percentile(1.0),
+                    writer.stalls());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package blog.vanillajava.slowfile;
+
+import net.openhft.chronicle.bytes.MappedBytes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Writes lines to a Chronicle {@link MappedBytes}, which maps the file in chunks as it grows.
+ *
+ * <p>The file grows a whole chunk at a time, so it is truncated to the bytes written afterwards.</p>
+ */
+public class ChronicleMappedStrategy implements WriteStrategy {
+
+    private static final long CHUNK_SIZE = 64 << 20;
+
+    @Override
+    public String name() {
+        return "chronicleMapped";
+    }
+
+    @Override
+    public void write(File file, byte[] line, long lines) throws IOException {
+        if (file.exists() && !file.delete())
+            throw new IOException("Unable to delete " + file);
+        long written;
+        MappedBytes bytes = MappedBytes.mappedBytes(file, CHUNK_SIZE);
+        try {
+            for (long i = 0; i < lines; i++)
+                bytes.write(line);
+            written = bytes.writePosition();
+        } finally {
+            bytes.releaseLast();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(written);
+        }
+    }
+}
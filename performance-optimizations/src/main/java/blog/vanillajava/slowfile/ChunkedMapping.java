@@ -0,0 +1,192 @@
+package blog.vanillajava.slowfile;
+
+import net.openhft.chronicle.core.OS;
+import net.openhft.chronicle.core.util.Histogram;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Maps a file one fixed-size chunk at a time, so files far larger than 2 GB, and than main memory, can be
+ * accessed with only two chunks mapped at once.
+ *
+ * <p>While one chunk is in use, a background thread maps the next one and touches each of its pages, so
+ * the page faults happen off the accessing thread. A chunk is unmapped as soon as the accessing thread
+ * moves past it, rather than when a {@code MappedByteBuffer} is garbage collected.</p>
+ *
+ * <p>Each access is timed, and one slower than {@link #STALL_NANOS} is counted as a stall, typically a page
+ * fault the pre-toucher didn't get to first.</p>
+ */
+abstract class ChunkedMapping implements Closeable {
+
+    static final long STALL_NANOS = Long.getLong("stallNanos", 100_000);
+
+    final RandomAccessFile file;
+    final FileChannel channel;
+    final long chunkSize;
+    final int pageSize = OS.pageSize();
+    private final FileChannel.MapMode mode;
+    private final ExecutorService pretoucher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "chunk-pretoucher");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Histogram latency = new Histogram();
+    private long stalls;
+    // the sum of the bytes touched in the last chunk, so the reads aren't optimised away
+    volatile long touched;
+
+    // the chunk in use
+    long chunkStart = -1;
+    long address;
+    // the chunk being pre-touched
+    private long nextStart;
+    private Future<Long> next;
+
+    ChunkedMapping(RandomAccessFile file, FileChannel.MapMode mode, long chunkSize) {
+        if (chunkSize <= 0 || chunkSize % OS.pageSize() != 0)
+            throw new IllegalArgumentException("chunkSize must be a positive multiple of the page size: " + chunkSize);
+        this.file = file;
+        this.channel = file.getChannel();
+        this.mode = mode;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Prepares a chunk for mapping, e.g. by growing the file. Called on the pre-toucher thread.
+     */
+    abstract void prepare(long start) throws IOException;
+
+    /**
+     * Touches one byte of the page at {@code address} so it is faulted in. Called on the pre-toucher thread.
+     *
+     * @return the byte touched.
+     */
+    abstract int touch(long address);
+
+    /**
+     * Unmaps the current chunk and makes the chunk starting at {@code start} current, waiting for the
+     * pre-toucher if it hasn't mapped it yet, and starts pre-touching the chunk after it.
+     */
+    void moveTo(long start) throws IOException {
+        unmapCurrent();
+        long mapped;
+        if (next != null && start == nextStart) {
+            mapped = await(next);
+        } else {
+            discardNext();
+            mapped = mapAndTouch(start);
+        }
+        chunkStart = start;
+        address = mapped;
+        long following = nextStart = start + chunkSize;
+        next = following < limit() ? pretoucher.submit(() -> mapAndTouch(following)) : null;
+    }
+
+    /**
+     * @return the size of the file, or of the file to be written, beyond which there are no chunks.
+     */
+    abstract long limit();
+
+    /**
+     * @return the bytes of the chunk starting at {@code start} which are in the file.
+     */
+    long chunkLength(long start) {
+        return Math.min(chunkSize, limit() - start);
+    }
+
+    /**
+     * @return the length mapped for the chunk starting at {@code start}, a whole number of pages.
+     */
+    private long mappedLength(long start) {
+        return (chunkLength(start) + pageSize - 1) / pageSize * pageSize;
+    }
+
+    private long mapAndTouch(long start) throws IOException {
+        prepare(start);
+        long mapped = OS.map(channel, mode, start, mappedLength(start));
+        long length = chunkLength(start);
+        long sum = 0;
+        for (long offset = 0; offset < length; offset += pageSize)
+            sum += touch(mapped + offset);
+        touched = sum;
+        return mapped;
+    }
+
+    private static long await(Future<Long> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted mapping a chunk", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    private void unmapCurrent() throws IOException {
+        if (chunkStart < 0)
+            return;
+        OS.unmap(address, mappedLength(chunkStart));
+        chunkStart = -1;
+    }
+
+    private void discardNext() throws IOException {
+        if (next == null)
+            return;
+        long mapped = await(next);
+        next = null;
+        OS.unmap(mapped, mappedLength(nextStart));
+    }
+
+    /**
+     * Records how long an access took since {@code start}.
+     */
+    void sample(long start) {
+        long nanos = System.nanoTime() - start;
+        latency.sampleNanos(nanos);
+        if (nanos > STALL_NANOS)
+            stalls++;
+    }
+
+    /**
+     * @return the time each access took, in nanoseconds.
+     */
+    public Histogram latency() {
+        return latency;
+    }
+
+    /**
+     * @return the number of accesses slower than {@link #STALL_NANOS}.
+     */
+    public long stalls() {
+        return stalls;
+    }
+
+    /**
+     * Called once every chunk is unmapped.
+     */
+    void closeFile() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Unmaps every chunk and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            unmapCurrent();
+            discardNext();
+        } finally {
+            pretoucher.shutdown();
+            closeFile();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package blog.vanillajava.slowfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.OpenOption;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Writes whole, block-aligned buffers from block-aligned memory, as {@code O_DIRECT} requires, bypassing
+ * the page cache where the JVM and file system support it.
+ *
+ * <p>{@code ExtendedOpenOption.DIRECT} and {@code ByteBuffer.alignedSlice} were added in Java 10, so they
+ * are looked up reflectively. On Java 8, or a file system which doesn't support {@code O_DIRECT} such as
+ * tmpfs, the same aligned writes go through the page cache. The last block is padded to a whole block and
+ * the file truncated to the bytes written.</p>
+ */
+public class DirectIOStrategy implements WriteStrategy {
+
+    private static final int BLOCK_SIZE = 4 << 10;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final OpenOption DIRECT = directOption();
+
+    private ByteBuffer buffer;
+    private boolean direct;
+
+    @Override
+    public String name() {
+        return "directIO";
+    }
+
+    /**
+     * @return whether the last write bypassed the page cache.
+     */
+    public boolean direct() {
+        return direct;
+    }
+
+    @Override
+    public void write(File file, byte[] line, long lines) throws IOException {
+        if (buffer == null)
+            buffer = alignedBuffer();
+        ByteBuffer buffer = this.buffer;
+        buffer.clear();
+        long size = lines * line.length;
+        try (FileChannel channel = open(file)) {
+            for (long i = 0; i < lines; i++) {
+                int remaining = buffer.remaining();
+                if (remaining >= line.length) {
+                    buffer.put(line);
+                    continue;
+                }
+                // fill the buffer so every write but the last is a whole number of blocks
+                buffer.put(line, 0, remaining);
+                flush(channel, buffer);
+                buffer.put(line, remaining, line.length - remaining);
+            }
+            // pad the last block with zeros
+            int tail = buffer.position() % BLOCK_SIZE;
+            if (tail > 0)
+                for (int i = tail; i < BLOCK_SIZE; i++)
+                    buffer.put((byte) 0);
+            flush(channel, buffer);
+            channel.truncate(size);
+        }
+    }
+
+    private FileChannel open(File file) throws IOException {
+        Set<OpenOption> options = new HashSet<>(EnumSet.of(CREATE, WRITE, TRUNCATE_EXISTING));
+        if (DIRECT != null) {
+            options.add(DIRECT);
+            try {
+                FileChannel channel = FileChannel.open(file.toPath(), options);
+                direct = true;
+                return channel;
+            } catch (IOException | UnsupportedOperationException e) {
+                // not supported by this file system
+                options.remove(DIRECT);
+            }
+        }
+        direct = false;
+        return FileChannel.open(file.toPath(), options);
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private static OpenOption directOption() {
+        try {
+            Class<?> type = Class.forName("com.sun.nio.file.ExtendedOpenOption");
+            for (Object option : type.getEnumConstants())
+                if ("DIRECT".equals(option.toString()))
+                    return (OpenOption) option;
+        } catch (ClassNotFoundException ignored) {
+            // not available on this JVM
+        }
+        return null;
+    }
+
+    private static ByteBuffer alignedBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE + BLOCK_SIZE);
+        try {
+            Method alignedSlice = ByteBuffer.class.getMethod("alignedSlice", int.class);
+            ByteBuffer aligned = (ByteBuffer) alignedSlice.invoke(buffer, BLOCK_SIZE);
+            aligned.limit(BUFFER_SIZE);
+            return aligned.slice();
+        } catch (ReflectiveOperationException e) {
+            // Java 8 has no O_DIRECT, so the alignment doesn't matter
+            buffer.limit(BUFFER_SIZE);
+            return buffer.slice();
+        }
+    }
+}
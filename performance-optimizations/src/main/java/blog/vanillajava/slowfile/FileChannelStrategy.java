@@ -0,0 +1,59 @@
+package blog.vanillajava.slowfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Fills a direct {@link ByteBuffer} with lines and writes it to a {@link FileChannel} when full.
+ *
+ * <p>The direct buffers are pooled and reused by later writes, as allocating a direct buffer is expensive
+ * and writing from a heap buffer copies it to a temporary direct buffer first.</p>
+ */
+public class FileChannelStrategy implements WriteStrategy {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final ArrayDeque<ByteBuffer> pool = new ArrayDeque<>();
+
+    @Override
+    public String name() {
+        return "fileChannel";
+    }
+
+    @Override
+    public void write(File file, byte[] line, long lines) throws IOException {
+        ByteBuffer buffer = acquire();
+        try (FileChannel channel = FileChannel.open(file.toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
+            for (long i = 0; i < lines; i++) {
+                if (buffer.remaining() < line.length)
+                    flush(channel, buffer);
+                buffer.put(line);
+            }
+            flush(channel, buffer);
+        } finally {
+            release(buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private ByteBuffer acquire() {
+        ByteBuffer buffer = pool.poll();
+        return buffer == null ? ByteBuffer.allocateDirect(BUFFER_SIZE) : buffer;
+    }
+
+    private void release(ByteBuffer buffer) {
+        buffer.clear();
+        pool.push(buffer);
+    }
+}
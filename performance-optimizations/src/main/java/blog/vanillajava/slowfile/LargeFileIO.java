@@ -0,0 +1,83 @@
+package blog.vanillajava.slowfile;
+
+import net.openhft.chronicle.core.util.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A benchmark for writing and reading a file larger than 2 GB, and larger than main memory, with a
+ * {@link LargeFileWriter} and {@link LargeFileReader}.
+ *
+ * <p>The size is set with {@code -Dsize}, default 4 GB, e.g. {@code -Dsize=1000000000000} for 1 TB, the
+ * chunk size with {@code -DchunkSize}, and the directory with {@code -Ddir}, the current directory by
+ * default, as a file larger than memory can't go in {@code /dev/shm}. Each 64 KB block starts with its
+ * index, which is checked as it is read back.</p>
+ */
+public class LargeFileIO {
+
+    private static final long FILE_SIZE_IN_BYTES = Long.getLong("size", 4L << 30); // 4 GB
+    private static final long CHUNK_SIZE = Long.getLong("chunkSize", 256L << 20);
+    private static final String DIR = System.getProperty("dir", ".");
+    private static final int BLOCK_SIZE = 64 << 10;
+    public static final String FILE_NAME = "deleteme.large";
+
+    public static void main(String[] args) throws IOException {
+        File file = new File(DIR, FILE_NAME);
+        try {
+            for (int run = 1; run <= 3; run++)
+                runWriterReaderBenchmark(file, run);
+        } finally {
+            if (file.exists() && !file.delete())
+                System.err.println("Warning: Failed to delete benchmark file.");
+        }
+    }
+
+    private static void runWriterReaderBenchmark(File file, int run) throws IOException {
+        long blocks = FILE_SIZE_IN_BYTES / BLOCK_SIZE;
+        long bytes = blocks * BLOCK_SIZE;
+        byte[] block = new byte[BLOCK_SIZE];
+        ByteBuffer index = ByteBuffer.wrap(block);
+
+        // Measure write performance
+        long start = System.nanoTime();
+        try (LargeFileWriter writer = new LargeFileWriter(file, CHUNK_SIZE)) {
+            for (long i = 0; i < blocks; i++) {
+                index.putLong(0, i);
+                writer.write(block);
+            }
+            printLatency(run, "write", writer.latency(), writer.stalls());
+        }
+        long mid = System.nanoTime();
+
+        // Measure read performance
+        try (LargeFileReader reader = new LargeFileReader(file, CHUNK_SIZE)) {
+            if (reader.size() != bytes)
+                throw new IOException("File size mismatch: expected " + bytes + " bytes, but was " + reader.size());
+            for (long i = 0; i < blocks; i++) {
+                if (reader.read(block) != BLOCK_SIZE || index.getLong(0) != i)
+                    throw new IOException("Block " + i + " was not read back as written");
+            }
+            printLatency(run, "read", reader.latency(), reader.stalls());
+        }
+        long end = System.nanoTime();
+
+        // bytes per nanosecond == GB/second
+        System.out.printf("Run %d, %,d bytes, Write speed: %.3f GB/sec, read speed %.3f GB/sec%n",
+                run, bytes,
+                (double) bytes / (mid - start),
+                (double) bytes / (end - mid));
+    }
+
+    private static void printLatency(int run, String label, Histogram histogram, long stalls) {
+        System.out.printf("Run %d, %d KB %s latency ns: p50 %,.0f, p99 %,.0f, p99.99 %,.0f, worst %,.0f, stalls over %,d ns: %,d%n",
+                run, BLOCK_SIZE >> 10, label,
+                histogram.percentile(0.50),
+                histogram.percentile(0.99),
+                histogram.percentile(0.9999),
+                histogram.percentile(1.0),
+                ChunkedMapping.STALL_NANOS,
+                stalls);
+    }
+}
@@ -0,0 +1,81 @@
+package blog.vanillajava.slowfile;
+
+import net.openhft.chronicle.core.Jvm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+
+/**
+ * Reads a file of any size sequentially through a memory mapping, one chunk at a time.
+ *
+ * <p>See {@link ChunkedMapping} for how chunks are pre-touched and released.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public class LargeFileReader extends ChunkedMapping {
+
+    private final long size;
+    private long position;
+
+    /**
+     * @param file      the file to read.
+     * @param chunkSize the size of each mapping, a multiple of the page size.
+     * @throws IOException if the file can't be opened.
+     */
+    public LargeFileReader(File file, long chunkSize) throws IOException {
+        super(new RandomAccessFile(file, "r"), FileChannel.MapMode.READ_ONLY, chunkSize);
+        size = this.file.length();
+    }
+
+    /**
+     * Reads the next bytes of the file into {@code bytes}.
+     *
+     * @param bytes the buffer to fill.
+     * @return the number of bytes read, less than the length of {@code bytes} only at the end of the file,
+     * or -1 if there are no more bytes.
+     * @throws IOException if the next chunk can't be mapped.
+     */
+    public int read(byte[] bytes) throws IOException {
+        if (position >= size)
+            return -1;
+        long start = System.nanoTime();
+        int offset = 0;
+        while (offset < bytes.length && position < size) {
+            if (chunkStart < 0 || position == chunkStart + chunkSize)
+                moveTo(position);
+            long end = chunkStart + chunkLength(chunkStart);
+            int length = (int) Math.min(bytes.length - offset, end - position);
+            MEMORY.copyMemory(address + (position - chunkStart), bytes, Jvm.arrayByteBaseOffset() + offset, length);
+            offset += length;
+            position += length;
+        }
+        sample(start);
+        return offset;
+    }
+
+    /**
+     * @return the size of the file.
+     */
+    public long size() {
+        return size;
+    }
+
+    @Override
+    void prepare(long start) {
+        // the file is read as it is
+    }
+
+    @Override
+    int touch(long address) {
+        return MEMORY.readByte(address);
+    }
+
+    @Override
+    long limit() {
+        return size;
+    }
+}
@@ -0,0 +1,86 @@
+package blog.vanillajava.slowfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+
+/**
+ * Appends to a file of any size through a memory mapping, one chunk at a time.
+ *
+ * <p>The file is grown a chunk at a time as a sparse file, and truncated to the bytes written on
+ * {@link #close()}. See {@link ChunkedMapping} for how chunks are pre-touched and released.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ */
+public class LargeFileWriter extends ChunkedMapping {
+
+    private long position;
+
+    /**
+     * @param file      the file to write, replacing it if it exists.
+     * @param chunkSize the size of each mapping, a multiple of the page size.
+     * @throws IOException if the file can't be opened.
+     */
+    public LargeFileWriter(File file, long chunkSize) throws IOException {
+        super(new RandomAccessFile(file, "rw"), FileChannel.MapMode.READ_WRITE, chunkSize);
+        this.file.setLength(0);
+    }
+
+    /**
+     * Appends {@code bytes} to the file.
+     *
+     * @param bytes the bytes to write.
+     * @throws IOException if the next chunk can't be mapped.
+     */
+    public void write(byte[] bytes) throws IOException {
+        long start = System.nanoTime();
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (chunkStart < 0 || position == chunkStart + chunkSize)
+                moveTo(position);
+            int length = (int) Math.min(bytes.length - offset, chunkStart + chunkSize - position);
+            MEMORY.copyMemory(bytes, offset, address + (position - chunkStart), length);
+            offset += length;
+            position += length;
+        }
+        sample(start);
+    }
+
+    /**
+     * @return the number of bytes written.
+     */
+    public long position() {
+        return position;
+    }
+
+    @Override
+    void prepare(long start) throws IOException {
+        // grows the file without allocating disk space
+        if (file.length() < start + chunkSize)
+            file.setLength(start + chunkSize);
+    }
+
+    @Override
+    int touch(long address) {
+        // the file is new, so the page is already zero
+        MEMORY.writeByte(address, (byte) 0);
+        return 0;
+    }
+
+    @Override
+    long limit() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    void closeFile() throws IOException {
+        try {
+            file.setLength(position);
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package blog.vanillajava.slowfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Copies lines into a window of the file mapped with a {@link MappedByteBuffer}, mapping the next window
+ * when it is full. A line can span two windows.
+ *
+ * <p>The file is mapped at its final size, so no write extends it. The mapped windows are released when
+ * they are garbage collected.</p>
+ */
+public class MappedBufferStrategy implements WriteStrategy {
+
+    private static final int WINDOW_SIZE = 64 << 20;
+
+    @Override
+    public String name() {
+        return "mappedBuffer";
+    }
+
+    @Override
+    public void write(File file, byte[] line, long lines) throws IOException {
+        long size = lines * line.length;
+        try (FileChannel channel = FileChannel.open(file.toPath(), CREATE, READ, WRITE, TRUNCATE_EXISTING)) {
+            long position = 0;
+            MappedByteBuffer window = map(channel, position, size);
+            for (long i = 0; i < lines; i++) {
+                int remaining = window.remaining();
+                if (remaining >= line.length) {
+                    window.put(line);
+                    continue;
+                }
+                window.put(line, 0, remaining);
+                position += window.capacity();
+                window = map(channel, position, size);
+                window.put(line, remaining, line.length - remaining);
+            }
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_WRITE, position, Math.min(WINDOW_SIZE, size - position));
+    }
+}
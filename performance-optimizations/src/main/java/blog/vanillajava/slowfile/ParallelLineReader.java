@@ -0,0 +1,209 @@
+package blog.vanillajava.slowfile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Reads a text file by memory mapping it, splitting it into newline-aligned chunks and scanning the
+ * chunks in parallel on a {@link ForkJoinPool}, directly from the bytes.
+ *
+ * <p>Unlike {@code Files.lines} no line is decoded into a {@code String}. Each line is passed to a
+ * {@link LineFunction} as a range of a mapped {@link ByteBuffer}, and the results are summed. Lines
+ * end with {@code \n}, {@code \r\n} or the end of the file, and the line terminator is not part of the
+ * line, as for {@code Files.lines}. A lone {@code \r} is not treated as a line end.</p>
+ *
+ * <p>Chunk boundaries are found up front by reading a few bytes at each nominal boundary, so every
+ * chunk starts at the beginning of a line and each task maps only its own chunk. A chunk is limited to
+ * {@code Integer.MAX_VALUE} bytes, the most a {@link MappedByteBuffer} can hold, so a single line can't
+ * be longer than that.</p>
+ */
+public final class ParallelLineReader {
+
+    /**
+     * The default chunk size; small enough to balance the work across threads, large enough that the
+     * cost of mapping each chunk is negligible.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 << 20;
+    // the bytes read at a time while looking for the end of a line at a chunk boundary
+    private static final int SCAN_SIZE = 4 << 10;
+
+    /**
+     * Called for each line of a file, possibly concurrently from different threads.
+     */
+    @FunctionalInterface
+    public interface LineFunction {
+        /**
+         * @param buffer the mapped chunk holding the line; only read it between {@code start} and {@code end}.
+         * @param start  the index of the first byte of the line.
+         * @param end    the index after the last byte of the line, excluding the line terminator.
+         * @return the value to add to the result.
+         */
+        long applyAsLong(ByteBuffer buffer, int start, int end);
+    }
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    /**
+     * @param pool      the pool to scan the chunks on.
+     * @param chunkSize the nominal size of each chunk in bytes.
+     */
+    public ParallelLineReader(ForkJoinPool pool, int chunkSize) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @param pool the pool to scan the chunks on.
+     */
+    public ParallelLineReader(ForkJoinPool pool) {
+        this(pool, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @return the number of lines in the file.
+     */
+    public long countLines(Path file) throws IOException {
+        return sum(file, (buffer, start, end) -> 1);
+    }
+
+    /**
+     * @return the total length of the lines in bytes, as {@code Files.lines(file).mapToLong(String::length).sum()}
+     * for a file of ASCII text.
+     */
+    public long sumLineLengths(Path file) throws IOException {
+        return sum(file, (buffer, start, end) -> end - start);
+    }
+
+    /**
+     * Applies {@code function} to every line of the file and sums the results.
+     *
+     * @param file     the file to read.
+     * @param function applied to each line, from as many threads as the pool has.
+     * @return the sum of the values returned for each line.
+     * @throws IOException if the file can't be read.
+     */
+    public long sum(Path file, LineFunction function) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long[] boundaries = boundaries(channel);
+            try {
+                return pool.invoke(new ChunkTask(channel, boundaries, 0, boundaries.length - 1, function));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * @return the offsets of the start of each chunk, followed by the size of the file.
+     */
+    private long[] boundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long[] boundaries = new long[(int) (size / chunkSize) + 2];
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+        int count = 0;
+        boundaries[count++] = 0;
+        long position = 0;
+        while (size - position > chunkSize) {
+            long next = nextLineStart(channel, position + chunkSize, size, scan);
+            if (next >= size)
+                break;
+            checkChunkSize(position, next);
+            boundaries[count++] = position = next;
+        }
+        checkChunkSize(position, size);
+        boundaries[count++] = size;
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    private static void checkChunkSize(long start, long end) throws IOException {
+        if (end - start > Integer.MAX_VALUE)
+            throw new IOException("Line at or after " + start + " is longer than " + Integer.MAX_VALUE + " bytes");
+    }
+
+    /**
+     * @return the offset after the first {@code \n} at or after {@code from}, or {@code size} if there is none.
+     */
+    private static long nextLineStart(FileChannel channel, long from, long size, ByteBuffer scan) throws IOException {
+        long position = from;
+        while (position < size) {
+            scan.clear();
+            int read = channel.read(scan, position);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; i++)
+                if (scan.get(i) == '\n')
+                    return position + i + 1;
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Scans the chunks {@code from} until {@code to}, splitting the range in half until it is one chunk.
+     */
+    private static final class ChunkTask extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final long[] boundaries;
+        private final int from, to;
+        private final transient LineFunction function;
+
+        ChunkTask(FileChannel channel, long[] boundaries, int from, int to, LineFunction function) {
+            this.channel = channel;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+            this.function = function;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                ChunkTask left = new ChunkTask(channel, boundaries, from, mid, function);
+                left.fork();
+                long right = new ChunkTask(channel, boundaries, mid, to, function).compute();
+                return right + left.join();
+            }
+            try {
+                long start = boundaries[from];
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, boundaries[to] - start);
+                return scan(buffer, function);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Applies the function to each line in a buffer which starts at the beginning of a line.
+     */
+    static long scan(ByteBuffer buffer, LineFunction function) {
+        int limit = buffer.limit();
+        long sum = 0;
+        int start = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buffer.get(i) != '\n')
+                continue;
+            int end = i > start && buffer.get(i - 1) == '\r' ? i - 1 : i;
+            sum += function.applyAsLong(buffer, start, end);
+            start = i + 1;
+        }
+        // a last line without a line terminator
+        if (start < limit)
+            sum += function.applyAsLong(buffer, start, limit);
+        return sum;
+    }
+}
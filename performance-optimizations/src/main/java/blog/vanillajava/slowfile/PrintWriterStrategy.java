@@ -0,0 +1,27 @@
+package blog.vanillajava.slowfile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The baseline, which encodes the characters of every line with a {@link PrintWriter}.
+ */
+public class PrintWriterStrategy implements WriteStrategy {
+
+    @Override
+    public String name() {
+        return "printWriter";
+    }
+
+    @Override
+    public void write(File file, byte[] line, long lines) throws IOException {
+        // println would write the platform line separator, which isn't always one byte
+        String text = new String(line, StandardCharsets.ISO_8859_1);
+        try (PrintWriter writer = new PrintWriter(file)) {
+            for (long i = 0; i < lines; i++)
+                writer.print(text);
+        }
+    }
+}
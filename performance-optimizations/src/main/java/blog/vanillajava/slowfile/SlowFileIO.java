@@ -2,8 +2,9 @@ package blog.vanillajava.slowfile;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 /*
@@ -14,32 +15,59 @@ Run 3, Write speed: 0.933 GB/sec, read speed 1.197 GB/sec
 /**
  * A benchmark program for testing write and read speeds of file IO.
  * The program writes a 2GB text file with repeated 50-character lines and then reads it back to measure performance.
+ *
+ * <p>The file is written with each {@link WriteStrategy} in turn, or only the one named by {@code -Dwriter},
+ * e.g. {@code -Dwriter=fileChannel}. Each line is counted with its newline, so the speeds are of the bytes
+ * actually written. The {@code async} writer also prints how long the writing thread took to hand off
+ * each line to its background flusher.</p>
+ *
+ * <p>With {@code -Dmode=parallel} the file is read back with a {@link ParallelLineReader} instead of
+ * {@code Files.lines}, once for each thread count from 1 up to {@code -Dthreads}, doubling each time.</p>
  */
 public class SlowFileIO {
 
     private static final String TEXT = "01234567890123456789012345678901234567890123456789"; // 50 characters
     private static final long FILE_SIZE_IN_BYTES = 2_000_000_000; // 2 GB
     public static final String FILE_NAME = "deleteme.txt";
+    private static final boolean PARALLEL = "parallel".equals(System.getProperty("mode", "lines"));
+    private static final int THREADS = Integer.getInteger("threads", Runtime.getRuntime().availableProcessors());
+    private static final String WRITER = System.getProperty("writer", "all");
 
     public static void main(String[] args) {
         File directory = determineWorkingDirectory();
+        WriteStrategy[] strategies = selectStrategies();
 
         for (int run = 1; run <= 3; run++) {
-            try {
-                runWriterReaderBenchmark(directory, TEXT, run);
-            } catch (IOException e) {
-                System.err.printf("Run %d failed: %s%n", run, e.getMessage());
+            for (WriteStrategy strategy : strategies) {
+                try {
+                    runWriterReaderBenchmark(directory, TEXT, run, strategy);
+                } catch (IOException e) {
+                    System.err.printf("Run %d, %s failed: %s%n", run, strategy.name(), e.getMessage());
+                }
             }
         }
     }
 
     /**
-     * Determines the working directory for the benchmark.
+     * @return the strategy named by {@code -Dwriter}, or all of them
+     */
+    private static WriteStrategy[] selectStrategies() {
+        WriteStrategy[] all = WriteStrategy.all();
+        if ("all".equals(WRITER))
+            return all;
+        for (WriteStrategy strategy : all)
+            if (strategy.name().equals(WRITER))
+                return new WriteStrategy[]{strategy};
+        throw new IllegalArgumentException("Unknown writer " + WRITER);
+    }
+
+    /**
+     * Determines the working directory for the benchmark, also used by the other file and shared memory benchmarks.
      * If "/dev/shm" is not available, defaults to the current directory.
      *
      * @return the working directory as a {@link File}
      */
-    private static File determineWorkingDirectory() {
+    public static File determineWorkingDirectory() {
         File path = new File("/dev/shm");
         return path.isDirectory() ? path : new File(".");
     }
@@ -47,54 +75,53 @@ public class SlowFileIO {
     /**
      * Runs a single benchmark iteration to measure write and read speeds.
      *
-     * @param path the directory to perform the file IO operations
-     * @param text the content to write repeatedly to the file
-     * @param run the run number for benchmarking
+     * @param path     the directory to perform the file IO operations
+     * @param text     the content to write repeatedly to the file
+     * @param run      the run number for benchmarking
+     * @param strategy how to write the file
      * @throws IOException if an IO error occurs
      */
-    private static void runWriterReaderBenchmark(File path, String text, int run) throws IOException {
+    private static void runWriterReaderBenchmark(File path, String text, int run, WriteStrategy strategy) throws IOException {
         File file = new File(path, FILE_NAME);
+        byte[] line = (text + '\n').getBytes(StandardCharsets.ISO_8859_1);
+        // enough whole lines, including their newlines, to reach the file size
+        long lines = (FILE_SIZE_IN_BYTES + line.length - 1) / line.length;
+        long bytes = lines * line.length;
+        long lineBytes = lines * text.length();
 
-        // Measure write performance
-        long start = System.nanoTime();
-        writeToFile(file, text, FILE_SIZE_IN_BYTES);
-
-        long mid = System.nanoTime();
-        // Measure read performance
-        long totalBytesRead = readFromFile(file);
-
-        long end = System.nanoTime();
-        // Ensure the file size matches expectations
-        if (totalBytesRead != FILE_SIZE_IN_BYTES) {
-            throw new IOException("File size mismatch: expected " + FILE_SIZE_IN_BYTES + " bytes, but read " + totalBytesRead);
-        }
+        try {
+            // Measure write performance
+            long start = System.nanoTime();
+            strategy.write(file, line, lines);
+            long mid = System.nanoTime();
+            // Ensure the file size matches expectations
+            if (file.length() != bytes) {
+                throw new IOException("File size mismatch: expected " + bytes + " bytes, but wrote " + file.length());
+            }
 
-        // Delete the file after the benchmark
-        if (!file.delete()) {
-            System.err.println("Warning: Failed to delete benchmark file.");
-        }
+            if (PARALLEL) {
+                System.out.printf("Run %d, %s write speed: %.3f GB/sec%n", run, strategy.name(), (double) bytes / (mid - start));
+                readInParallel(file, run, bytes, lineBytes);
+                return;
+            }
+            // Measure read performance
+            long totalBytesRead = readFromFile(file);
 
-        // bytes per nanosecond == GB/second
-        System.out.printf("Run %d, Write speed: %.3f GB/sec, read speed %.3f GB/sec%n",
-                run,
-                (double) FILE_SIZE_IN_BYTES / (mid - start),
-                (double) FILE_SIZE_IN_BYTES / (end - mid));
-    }
+            long end = System.nanoTime();
+            if (totalBytesRead != lineBytes) {
+                throw new IOException("Line length mismatch: expected " + lineBytes + " bytes, but read " + totalBytesRead);
+            }
 
-    /**
-     * Writes a large file with repeated text lines.
-     *
-     * @param file            the file to write to
-     * @param text            the text to write repeatedly
-     * @param fileSizeInBytes the size of the lines of file in bytes
-     * @throws IOException if an IO error occurs
-     */
-    private static void writeToFile(File file, String text, long fileSizeInBytes) throws IOException {
-        try (PrintWriter writer = new PrintWriter(file)) {
-            long writtenBytes = 0;
-            while (writtenBytes < fileSizeInBytes) {
-                writer.println(text);
-                writtenBytes += text.length();
+            // bytes per nanosecond == GB/second
+            System.out.printf("Run %d, %s write speed: %.3f GB/sec, read speed %.3f GB/sec%n",
+                    run,
+                    strategy.name(),
+                    (double) bytes / (mid - start),
+                    (double) bytes / (end - mid));
+        } finally {
+            // Delete the file after the benchmark
+            if (file.exists() && !file.delete()) {
+                System.err.println("Warning: Failed to delete benchmark file.");
             }
         }
     }
@@ -103,7 +130,7 @@ public class SlowFileIO {
      * Reads a file and calculates the total size in bytes by summing the length of each line.
      *
      * @param file the file to read from
-     * @return the total number of bytes read in all lines
+     * @return the total number of bytes read in all lines, excluding newlines
      * @throws IOException if an IO error occurs
      */
     private static long readFromFile(File file) throws IOException {
@@ -111,4 +138,34 @@ public class SlowFileIO {
             return lines.mapToLong(String::length).sum();
         }
     }
+
+    /**
+     * Reads the file with a {@link ParallelLineReader} for each thread count, printing the read speed of each.
+     *
+     * @param file      the file to read from
+     * @param run       the run number for benchmarking
+     * @param bytes     the size of the file
+     * @param lineBytes the expected total length of the lines, excluding newlines
+     * @throws IOException if an IO error occurs, or the total length of the lines is not as expected
+     */
+    private static void readInParallel(File file, int run, long bytes, long lineBytes) throws IOException {
+        for (int threads = 1; ; threads = Math.min(threads * 2, THREADS)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                ParallelLineReader reader = new ParallelLineReader(pool);
+                long start = System.nanoTime();
+                long totalBytesRead = reader.sumLineLengths(file.toPath());
+                long end = System.nanoTime();
+                if (totalBytesRead != lineBytes) {
+                    throw new IOException("Line length mismatch: expected " + lineBytes + " bytes, but read " + totalBytesRead);
+                }
+                System.out.printf("Run %d, threads %d, parallel read speed %.3f GB/sec%n",
+                        run, threads, (double) bytes / (end - start));
+            } finally {
+                pool.shutdown();
+            }
+            if (threads >= THREADS)
+                break;
+        }
+    }
 }
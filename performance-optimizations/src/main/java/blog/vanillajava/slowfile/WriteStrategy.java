@@ -0,0 +1,43 @@
+package blog.vanillajava.slowfile;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A way of writing the same line to a file repeatedly, as a logging sink would, so the strategies can be
+ * compared on the same workload.
+ *
+ * <p>Each strategy writes exactly {@code lines * line.length} bytes, so the file size can be checked.</p>
+ */
+public interface WriteStrategy {
+
+    /**
+     * @return a short name used to select the strategy and to label its results.
+     */
+    String name();
+
+    /**
+     * Writes {@code line} {@code lines} times, replacing the file if it exists.
+     *
+     * @param file  the file to write.
+     * @param line  the encoded line, including its newline.
+     * @param lines the number of times to write it.
+     * @throws IOException if an IO error occurs.
+     */
+    void write(File file, byte[] line, long lines) throws IOException;
+
+    /**
+     * @return every strategy, starting with the {@code PrintWriter} baseline.
+     */
+    static WriteStrategy[] all() {
+        return new WriteStrategy[]{
+                new PrintWriterStrategy(),
+                new BufferedStreamStrategy(),
+                new FileChannelStrategy(),
+                new MappedBufferStrategy(),
+                new ChronicleMappedStrategy(),
+                new DirectIOStrategy(),
+                new AsyncWriterStrategy()
+        };
+    }
+}
@@ -2,7 +2,11 @@ package blog.vanillajava.triviallycopyable;
 
 import net.openhft.chronicle.bytes.Bytes;
 import net.openhft.chronicle.wire.BinaryWire;
+import net.openhft.chronicle.wire.JSONWire;
+import net.openhft.chronicle.wire.ShortTextLongConverter;
+import net.openhft.chronicle.wire.TextWire;
 import net.openhft.chronicle.wire.Wire;
+import net.openhft.chronicle.wire.WireType;
 import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
@@ -57,6 +61,8 @@ public class BenchmarkRunner {
     private final MarketData explicitMarketData2 = new ExplicitMarketData();
     private final MarketData directMarketData = new DirectMarketData();
     private final MarketData directMarketData2 = new DirectMarketData();
+    private final MarketData generatedMarketData = new GeneratedMarketData();
+    private final MarketData generatedMarketData2 = new GeneratedMarketData();
     private final MarketData triviallyCopyableMarketData = new TriviallyCopyableMarketData();
     private final MarketData triviallyCopyableMarketData2 = new TriviallyCopyableMarketData();
     private final Bytes<Void> bytes = Bytes.allocateDirect(512);
@@ -89,6 +95,13 @@ public class BenchmarkRunner {
         wire.getValueIn().marshallable(directMarketData2);
     }
 
+    @Benchmark
+    public void generatedWriteRead() {
+        bytes.clear();
+        wire.getValueOut().marshallable(generatedMarketData);
+        wire.getValueIn().marshallable(generatedMarketData2);
+    }
+
     @Benchmark
     public void trivialWriteRead() {
         bytes.clear();
@@ -96,6 +109,235 @@ public class BenchmarkRunner {
         wire.getValueIn().marshallable(triviallyCopyableMarketData2);
     }
 
+    /**
+     * State for the batch benchmarks, sized for the largest batch so the same buffer is reused.
+     */
+    @State(Scope.Benchmark)
+    public static class BatchState {
+        @Param({"1", "16", "256", "4096"})
+        int batchSize;
+
+        TriviallyCopyableMarketData[] in;
+        TriviallyCopyableMarketData[] out;
+        Bytes<Void> batchBytes;
+
+        @Setup
+        public void setup() {
+            in = new TriviallyCopyableMarketData[batchSize];
+            out = new TriviallyCopyableMarketData[batchSize];
+            for (int i = 0; i < batchSize; i++) {
+                in[i] = new TriviallyCopyableMarketData();
+                in[i].securityId = i;
+                out[i] = new TriviallyCopyableMarketData();
+            }
+            batchBytes = Bytes.allocateDirect(MarketDataBatch.batchLength(batchSize));
+        }
+
+        @TearDown
+        public void tearDown() {
+            batchBytes.releaseLast();
+        }
+    }
+
+    @Benchmark
+    public void trivialLoopWriteRead(BatchState state) {
+        Bytes<Void> batchBytes = state.batchBytes;
+        batchBytes.clear();
+        for (int i = 0; i < state.batchSize; i++)
+            state.in[i].writeMarshallable(batchBytes);
+        for (int i = 0; i < state.batchSize; i++)
+            state.out[i].readMarshallable(batchBytes);
+    }
+
+    @Benchmark
+    public void trivialBatchWriteRead(BatchState state) {
+        Bytes<Void> batchBytes = state.batchBytes;
+        batchBytes.clear();
+        MarketDataBatch.writeBatch(batchBytes, state.in, state.batchSize);
+        MarketDataBatch.readBatch(batchBytes, state.out);
+    }
+
+    /**
+     * State for the read-only access benchmarks, a block of records as they would appear in a
+     * memory-mapped file.
+     */
+    @State(Scope.Benchmark)
+    public static class ScanState {
+        @Param({"1000000"})
+        int records;
+
+        Bytes<Void> scanBytes;
+        final MarketDataFlyweight flyweight = new MarketDataFlyweight();
+        final TriviallyCopyableMarketData marketData = new TriviallyCopyableMarketData();
+
+        @Setup
+        public void setup() {
+            scanBytes = Bytes.allocateDirect((long) records * MarketDataFlyweight.recordLength());
+            TriviallyCopyableMarketData md = new TriviallyCopyableMarketData();
+            for (int i = 0; i < records; i++) {
+                md.securityId = i;
+                md.bidPrice0 = i * 0.01;
+                md.writeMarshallable(scanBytes);
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            scanBytes.releaseLast();
+        }
+    }
+
+    @Benchmark
+    public double trivialCopyScanBidPrice0(ScanState state) {
+        Bytes<Void> scanBytes = state.scanBytes;
+        TriviallyCopyableMarketData md = state.marketData;
+        scanBytes.readPosition(0);
+        double sum = 0;
+        for (int i = 0; i < state.records; i++) {
+            md.readMarshallable(scanBytes);
+            sum += md.bidPrice0;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double flyweightScanBidPrice0(ScanState state) {
+        MarketDataFlyweight flyweight = state.flyweight.wrap(state.scanBytes.bytesStore(), 0);
+        double sum = 0;
+        for (int i = 0; i < state.records; i++, flyweight.next())
+            sum += flyweight.bidPrice0();
+        return sum;
+    }
+
+    /**
+     * State for comparing a plain bulk copy with reading via a {@link MarketDataLayoutReader}, with the
+     * layout in the header either matching this JVM or forced to the field-mapped path.
+     */
+    @State(Scope.Benchmark)
+    public static class LayoutState {
+        final TriviallyCopyableMarketData in = new TriviallyCopyableMarketData();
+        final TriviallyCopyableMarketData out = new TriviallyCopyableMarketData();
+        Bytes<Void> layoutBytes;
+        MarketDataLayoutReader checked;
+        MarketDataLayoutReader fieldMapped;
+
+        @Setup
+        public void setup() {
+            layoutBytes = Bytes.allocateDirect(512);
+            MarketDataLayout.local().writeHeader(layoutBytes);
+            MarketDataLayout remote = MarketDataLayout.readHeader(layoutBytes);
+            checked = new MarketDataLayoutReader(remote);
+            fieldMapped = MarketDataLayoutReader.fieldMapped(remote);
+        }
+
+        @TearDown
+        public void tearDown() {
+            layoutBytes.releaseLast();
+        }
+    }
+
+    @Benchmark
+    public void trivialRawWriteRead(LayoutState state) {
+        Bytes<Void> layoutBytes = state.layoutBytes;
+        layoutBytes.clear();
+        state.in.writeMarshallable(layoutBytes);
+        state.out.readMarshallable(layoutBytes);
+    }
+
+    @Benchmark
+    public void trivialCheckedWriteRead(LayoutState state) {
+        Bytes<Void> layoutBytes = state.layoutBytes;
+        layoutBytes.clear();
+        state.in.writeMarshallable(layoutBytes);
+        state.checked.read(layoutBytes, state.out);
+    }
+
+    @Benchmark
+    public void trivialFieldMappedWriteRead(LayoutState state) {
+        Bytes<Void> layoutBytes = state.layoutBytes;
+        layoutBytes.clear();
+        state.in.writeMarshallable(layoutBytes);
+        state.fieldMapped.read(layoutBytes, state.out);
+    }
+
+    /**
+     * State for writing a tick as text, as for an audit log, with {@link TextWire} and {@link JSONWire}
+     * compared with a {@link MarketDataTextWriter}.
+     */
+    @State(Scope.Benchmark)
+    public static class TextState {
+        final MarketData marketData = new DefaultMarketData();
+        final MarketDataTextWriter yamlWriter = new MarketDataTextWriter(MarketDataTextWriter.Format.YAML);
+        final MarketDataTextWriter jsonWriter = new MarketDataTextWriter(MarketDataTextWriter.Format.JSON);
+        Bytes<Void> textBytes;
+        Wire textWire;
+        Wire jsonWire;
+
+        @Setup
+        public void setup() {
+            textBytes = Bytes.allocateElasticDirect(1024);
+            textWire = WireType.TEXT.apply(textBytes);
+            jsonWire = WireType.JSON_ONLY.apply(textBytes);
+            marketData.securityId(ShortTextLongConverter.INSTANCE.parse("EURUSD"))
+                    .time(1_700_000_000_123_456_789L)
+                    .bidQty0(1_000_000).bidPrice0(1.0825)
+                    .askQty0(2_000_000).askPrice0(1.08252);
+            checkSameAsWire(marketData);
+            // a price in each form TextWire writes
+            checkSameAsWire(new DefaultMarketData()
+                    .securityId(marketData.securityId())
+                    .time(marketData.time())
+                    .bidPrice0(123456789.5).bidPrice1(2e6).bidPrice2(-1500).bidPrice3(5e-4)
+                    .askPrice0(12345678.1234567).askPrice1(1.0 / 3).askPrice2(1e15).askPrice3(Double.NaN));
+        }
+
+        /**
+         * Throws an AssertionError unless the writers write the same text as TextWire and JSONWire.
+         */
+        void checkSameAsWire(MarketData md) {
+            checkSame(WireType.TEXT, yamlWriter, md);
+            checkSame(WireType.JSON_ONLY, jsonWriter, md);
+        }
+
+        private static void checkSame(WireType wireType, MarketDataTextWriter writer, MarketData md) {
+            Bytes<?> expected = Bytes.allocateElasticOnHeap();
+            Bytes<?> actual = Bytes.allocateElasticOnHeap();
+            wireType.apply(expected).getValueOut().marshallable(md);
+            writer.write(md, actual);
+            if (!expected.contentEquals(actual))
+                throw new AssertionError(wireType + " wrote\n" + expected + "\nbut the writer wrote\n" + actual);
+        }
+
+        @TearDown
+        public void tearDown() {
+            textBytes.releaseLast();
+        }
+    }
+
+    @Benchmark
+    public void textWireWrite(TextState state) {
+        state.textBytes.clear();
+        state.textWire.getValueOut().marshallable(state.marketData);
+    }
+
+    @Benchmark
+    public void jsonWireWrite(TextState state) {
+        state.textBytes.clear();
+        state.jsonWire.getValueOut().marshallable(state.marketData);
+    }
+
+    @Benchmark
+    public void yamlTextWriterWrite(TextState state) {
+        state.textBytes.clear();
+        state.yamlWriter.write(state.marketData, state.textBytes);
+    }
+
+    @Benchmark
+    public void jsonTextWriterWrite(TextState state) {
+        state.textBytes.clear();
+        state.jsonWriter.write(state.marketData, state.textBytes);
+    }
+
     public static void main(String[] args) throws RunnerException {
         Options opt = new OptionsBuilder()
                 .include(".*" + BenchmarkRunner.class.getSimpleName() + ".direct.*")
@@ -0,0 +1,166 @@
+package blog.vanillajava.triviallycopyable;
+
+import net.openhft.chronicle.core.util.Histogram;
+import net.openhft.chronicle.wire.ShortTextLongConverter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.runner.IterationType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Producer-consumer variants of the {@link BenchmarkRunner} benchmarks, where the writer and reader of
+ * each {@link MarketData} variant are on different threads, passing messages through an off-heap
+ * {@link SpscRing}. This includes the cost of moving cache lines between cores which a single thread
+ * writing and reading the same buffer hides.
+ *
+ * <p>The throughput is reported as the {@code messagesRead} counter, in messages per second. The producer
+ * stamps each message with {@link System#nanoTime()} and the consumer records the one-way latency,
+ * printing the p50/p99/p99.9 after each measurement iteration and for the whole run.</p>
+ *
+ * <p>With {@code maxInFlight=1} the producer waits for each message to be read, so the latency is the
+ * cross-core transfer alone. With a larger value, the ring fills and the latency includes queueing.
+ * See {@link BenchmarkRunner} for the JVM options required on Java 17+.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Fork(value = 1, warmups = 1)
+@Warmup(iterations = 5, time = 200, timeUnit = MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = MILLISECONDS)
+public class CrossCoreBenchmark {
+
+    static MarketData newMarketData(String variant) {
+        switch (variant) {
+            case "default":
+                return new DefaultMarketData();
+            case "defaultBytes":
+                return new DefaultBytesMarketData();
+            case "explicit":
+                return new ExplicitMarketData();
+            case "direct":
+                return new DirectMarketData();
+            case "generated":
+                return new GeneratedMarketData();
+            case "trivial":
+                return new TriviallyCopyableMarketData();
+            default:
+                throw new IllegalArgumentException("Unknown variant " + variant);
+        }
+    }
+
+    /**
+     * The state shared by the producer and consumer of a group.
+     */
+    @State(Scope.Group)
+    public static class Shared {
+        @Param({"default", "defaultBytes", "explicit", "direct", "generated", "trivial"})
+        String variant;
+
+        @Param({"1", "1024"})
+        int maxInFlight;
+
+        SpscRing ring;
+        MarketData written;
+        MarketData read;
+        Histogram latency;
+        Histogram totalLatency;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            ring = new SpscRing(1024);
+            written = newMarketData(variant);
+            // a full book of realistic values, so each message is as large as it would be in production
+            written.securityId(ShortTextLongConverter.INSTANCE.parse("EURUSD"))
+                    .time(System.nanoTime())
+                    .bidQty0(1_000_000).bidQty1(2_500_000).bidQty2(5_000_000).bidQty3(7_500_000)
+                    .askQty0(1_500_000).askQty1(3_000_000).askQty2(4_500_000).askQty3(9_000_000)
+                    .bidPrice0(1.08247).bidPrice1(1.08246).bidPrice2(1.08244).bidPrice3(1.08241)
+                    .askPrice0(1.08252).askPrice1(1.08253).askPrice2(1.08255).askPrice3(1.08258);
+            read = newMarketData(variant);
+            latency = new Histogram();
+            totalLatency = new Histogram();
+        }
+
+        @Setup(Level.Iteration)
+        public void resetRing() {
+            // Neither thread is running, so drop any messages in flight from the last iteration
+            ring.reset();
+            latency.reset();
+        }
+
+        @TearDown(Level.Iteration)
+        public void iterationLatency(IterationParams params) {
+            if (params.getType() != IterationType.MEASUREMENT)
+                return;
+            printLatency("iteration", latency);
+            totalLatency.add(latency);
+        }
+
+        @TearDown(Level.Trial)
+        public void trialLatency() {
+            printLatency("total", totalLatency);
+            ring.releaseLast();
+        }
+
+        private void printLatency(String label, Histogram histogram) {
+            System.out.printf("%n%s maxInFlight=%d %s one-way latency ns: p50 %,.0f, p99 %,.0f, p99.9 %,.0f, samples %,d%n",
+                    variant, maxInFlight, label,
+                    histogram.percentile(0.50),
+                    histogram.percentile(0.99),
+                    histogram.percentile(0.999),
+                    histogram.totalCount());
+        }
+    }
+
+    /**
+     * Counts the messages written, reported as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class WriteCounter {
+        public long messagesWritten;
+    }
+
+    /**
+     * Counts the messages read, reported as a rate.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class ReadCounter {
+        public long messagesRead;
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    public void write(Shared shared, WriteCounter counter) {
+        MarketData md = shared.written;
+        md.time = System.nanoTime();
+        if (shared.ring.tryWrite(md, shared.maxInFlight))
+            counter.messagesWritten++;
+    }
+
+    @Benchmark
+    @Group("transfer")
+    @GroupThreads(1)
+    public void read(Shared shared, ReadCounter counter) {
+        MarketData md = shared.read;
+        if (shared.ring.tryRead(md)) {
+            shared.latency.sampleNanos(System.nanoTime() - md.time);
+            counter.messagesRead++;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(".*" + CrossCoreBenchmark.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,102 @@
+package blog.vanillajava.triviallycopyable;
+
+import net.openhft.chronicle.bytes.Bytes;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Benchmark comparing {@link MarketDataDeltaCodec} with {@link ExplicitMarketData} for a stream of
+ * random walk ticks, in ns per tick written and read. The bytes per tick are printed by {@link #main}.
+ *
+ * <p>See {@link BenchmarkRunner} for the JVM options required on Java 17+.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Fork(value = 1, warmups = 1)
+@Warmup(iterations = 5, time = 200, timeUnit = MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = MILLISECONDS)
+public class DeltaCodecBenchmark {
+    static final int TICKS = 1 << 16;
+    static final int KEYFRAME_INTERVAL = Integer.getInteger("keyframeInterval", 100);
+
+    private final ExplicitMarketData[] ticks = generateTicks(TICKS);
+    private final ExplicitMarketData explicitMarketData2 = new ExplicitMarketData();
+    private final MarketDataDeltaCodec deltaCodec = new MarketDataDeltaCodec(KEYFRAME_INTERVAL, false);
+    private final MarketDataDeltaCodec xorCodec = new MarketDataDeltaCodec(KEYFRAME_INTERVAL, true);
+    private final Bytes<Void> bytes = Bytes.allocateDirect(512);
+    private int n = 0;
+
+    static ExplicitMarketData[] generateTicks(int count) {
+        RandomWalkTicks walk = new RandomWalkTicks(1, 1);
+        ExplicitMarketData[] ticks = new ExplicitMarketData[count];
+        for (int i = 0; i < count; i++)
+            walk.next(ticks[i] = new ExplicitMarketData());
+        return ticks;
+    }
+
+    @Benchmark
+    public void explicitWriteRead() {
+        bytes.clear();
+        ticks[n++ & (TICKS - 1)].writeMarshallable(bytes);
+        explicitMarketData2.readMarshallable(bytes);
+    }
+
+    @Benchmark
+    public void deltaWriteRead() {
+        bytes.clear();
+        deltaCodec.write(ticks[n++ & (TICKS - 1)], bytes);
+        deltaCodec.read(bytes, explicitMarketData2);
+    }
+
+    @Benchmark
+    public void deltaXorWriteRead() {
+        bytes.clear();
+        xorCodec.write(ticks[n++ & (TICKS - 1)], bytes);
+        xorCodec.read(bytes, explicitMarketData2);
+    }
+
+    /**
+     * Prints the average bytes per tick for each encoding, checking the ticks decode correctly.
+     */
+    static void printBytesPerTick() {
+        ExplicitMarketData[] ticks = generateTicks(TICKS);
+        Bytes<Void> bytes = Bytes.allocateElasticDirect(TICKS * 112L);
+        for (ExplicitMarketData tick : ticks)
+            tick.writeMarshallable(bytes);
+        System.out.printf("explicit: %.1f bytes/tick%n", (double) bytes.writePosition() / TICKS);
+
+        for (boolean xor : new boolean[]{false, true}) {
+            MarketDataDeltaCodec codec = new MarketDataDeltaCodec(KEYFRAME_INTERVAL, xor);
+            ExplicitMarketData md = new ExplicitMarketData();
+            bytes.clear();
+            for (ExplicitMarketData tick : ticks)
+                codec.write(tick, bytes);
+            long written = bytes.writePosition();
+            for (ExplicitMarketData tick : ticks) {
+                codec.read(bytes, md);
+                if (!md.equals(tick))
+                    throw new AssertionError("Expected " + tick + " but was " + md);
+            }
+            System.out.printf("delta%s: %.1f bytes/tick, keyframeInterval=%d%n",
+                    xor ? "+xor" : "", (double) written / TICKS, KEYFRAME_INTERVAL);
+        }
+        bytes.releaseLast();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        printBytesPerTick();
+
+        Options opt = new OptionsBuilder()
+                .include(".*" + DeltaCodecBenchmark.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(opt).run();
+    }
+}
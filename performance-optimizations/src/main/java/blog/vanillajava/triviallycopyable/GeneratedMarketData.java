@@ -0,0 +1,51 @@
+package blog.vanillajava.triviallycopyable;
+
+import blog.vanillajava.codegen.DirectMarshaller;
+import blog.vanillajava.codegen.DirectMarshallers;
+import net.openhft.chronicle.bytes.BytesIn;
+import net.openhft.chronicle.bytes.BytesOut;
+
+/**
+ * A concrete implementation of {@link MarketData} which reads and writes fields at fixed offsets
+ * like {@link DirectMarketData}, using a marshaller generated from the fields at runtime.
+ *
+ * <p>Unlike {@link DirectMarketData}, the offsets are derived from the fields, so adding a field to
+ * {@link MarketData} can't leave them out of date. The layout is the same as {@link DirectMarketData}.</p>
+ *
+ * @see DirectMarshallers
+ */
+public final class GeneratedMarketData extends MarketData {
+
+    private static final DirectMarshaller<GeneratedMarketData> MARSHALLER =
+            DirectMarshallers.of(GeneratedMarketData.class);
+
+    /**
+     * Reads the fields from their fixed offsets using the generated marshaller.
+     *
+     * @param bytes the {@link BytesIn} source containing the serialized data.
+     */
+    @Override
+    public void readMarshallable(BytesIn bytes) {
+        MARSHALLER.readMarshallable(this, bytes);
+    }
+
+    /**
+     * Writes the fields to their fixed offsets using the generated marshaller.
+     *
+     * @param bytes the {@link BytesOut} destination to write the serialized data to.
+     */
+    @Override
+    public void writeMarshallable(BytesOut bytes) {
+        MARSHALLER.writeMarshallable(this, bytes);
+    }
+
+    /**
+     * Indicates whether the serialization format includes self-describing metadata.
+     *
+     * @return {@code false}, indicating that the message is not self-describing.
+     */
+    @Override
+    public boolean usesSelfDescribingMessage() {
+        return false;
+    }
+}
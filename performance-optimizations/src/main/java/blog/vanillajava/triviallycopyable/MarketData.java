@@ -1,5 +1,6 @@
 package blog.vanillajava.triviallycopyable;
 
+import blog.vanillajava.decimal.FixedPrice;
 import net.openhft.chronicle.wire.SelfDescribingMarshallable;
 import net.openhft.chronicle.wire.converter.NanoTime;
 import net.openhft.chronicle.wire.converter.ShortText;
@@ -19,7 +20,7 @@ import net.openhft.chronicle.wire.converter.ShortText;
  *
  * @see SelfDescribingMarshallable
  */
-abstract class MarketData extends SelfDescribingMarshallable {
+public abstract class MarketData extends SelfDescribingMarshallable {
 
     /**
      * The unique identifier for the security, stored as a long.
@@ -59,6 +60,175 @@ abstract class MarketData extends SelfDescribingMarshallable {
      */
     double askPrice0, askPrice1, askPrice2, askPrice3;
 
-    // Note: Getters and setters are not shown for clarity. Consider adding them
-    // if external access to these fields is required in a controlled manner.
+    // Fluent getters and setters for access from outside this package.
+    // The fields are accessed directly within the package for clarity.
+
+    public long securityId() {
+        return securityId;
+    }
+
+    public MarketData securityId(long securityId) {
+        this.securityId = securityId;
+        return this;
+    }
+
+    public long time() {
+        return time;
+    }
+
+    public MarketData time(long time) {
+        this.time = time;
+        return this;
+    }
+
+    public int bidQty0() {
+        return bidQty0;
+    }
+
+    public MarketData bidQty0(int bidQty0) {
+        this.bidQty0 = bidQty0;
+        return this;
+    }
+
+    public int bidQty1() {
+        return bidQty1;
+    }
+
+    public MarketData bidQty1(int bidQty1) {
+        this.bidQty1 = bidQty1;
+        return this;
+    }
+
+    public int bidQty2() {
+        return bidQty2;
+    }
+
+    public MarketData bidQty2(int bidQty2) {
+        this.bidQty2 = bidQty2;
+        return this;
+    }
+
+    public int bidQty3() {
+        return bidQty3;
+    }
+
+    public MarketData bidQty3(int bidQty3) {
+        this.bidQty3 = bidQty3;
+        return this;
+    }
+
+    public int askQty0() {
+        return askQty0;
+    }
+
+    public MarketData askQty0(int askQty0) {
+        this.askQty0 = askQty0;
+        return this;
+    }
+
+    public int askQty1() {
+        return askQty1;
+    }
+
+    public MarketData askQty1(int askQty1) {
+        this.askQty1 = askQty1;
+        return this;
+    }
+
+    public int askQty2() {
+        return askQty2;
+    }
+
+    public MarketData askQty2(int askQty2) {
+        this.askQty2 = askQty2;
+        return this;
+    }
+
+    public int askQty3() {
+        return askQty3;
+    }
+
+    public MarketData askQty3(int askQty3) {
+        this.askQty3 = askQty3;
+        return this;
+    }
+
+    public double bidPrice0() {
+        return bidPrice0;
+    }
+
+    public MarketData bidPrice0(double bidPrice0) {
+        this.bidPrice0 = bidPrice0;
+        return this;
+    }
+
+    public double bidPrice1() {
+        return bidPrice1;
+    }
+
+    public MarketData bidPrice1(double bidPrice1) {
+        this.bidPrice1 = bidPrice1;
+        return this;
+    }
+
+    public double bidPrice2() {
+        return bidPrice2;
+    }
+
+    public MarketData bidPrice2(double bidPrice2) {
+        this.bidPrice2 = bidPrice2;
+        return this;
+    }
+
+    public double bidPrice3() {
+        return bidPrice3;
+    }
+
+    public MarketData bidPrice3(double bidPrice3) {
+        this.bidPrice3 = bidPrice3;
+        return this;
+    }
+
+    public double askPrice0() {
+        return askPrice0;
+    }
+
+    public MarketData askPrice0(double askPrice0) {
+        this.askPrice0 = askPrice0;
+        return this;
+    }
+
+    public double askPrice1() {
+        return askPrice1;
+    }
+
+    public MarketData askPrice1(double askPrice1) {
+        this.askPrice1 = askPrice1;
+        return this;
+    }
+
+    public double askPrice2() {
+        return askPrice2;
+    }
+
+    public MarketData askPrice2(double askPrice2) {
+        this.askPrice2 = askPrice2;
+        return this;
+    }
+
+    public double askPrice3() {
+        return askPrice3;
+    }
+
+    public MarketData askPrice3(double askPrice3) {
+        this.askPrice3 = askPrice3;
+        return this;
+    }
+
+    /**
+     * @return the mid of the best bid and ask prices as a {@link FixedPrice}, rounded HALF_UP to 6 decimal places.
+     */
+    public long fixedMidPrice0() {
+        return FixedPrice.mid(FixedPrice.fromDouble(bidPrice0), FixedPrice.fromDouble(askPrice0));
+    }
 }
@@ -0,0 +1,197 @@
+package blog.vanillajava.triviallycopyable;
+
+import net.openhft.chronicle.bytes.BytesIn;
+import net.openhft.chronicle.bytes.BytesOut;
+
+/**
+ * A stateful codec which writes only the fields of a {@link MarketData} that have changed since the
+ * previous tick of the same stream.
+ *
+ * <p>Each message starts with a stop-bit encoded presence bitmap, one bit per field, followed by the
+ * fields which changed. The timestamp and quantities are written as stop-bit encoded deltas. The
+ * prices are either written in full or, optionally, XOR compressed against the previous price, Gorilla
+ * style, but byte aligned: one byte with the number of leading and trailing zero bytes of the XOR
+ * followed by the bytes in between. A price moving by a tick usually takes two or three bytes.</p>
+ *
+ * <p>Every {@code keyframeInterval} messages, or when the security changes, a keyframe with every field
+ * is written so a receiver can join or resynchronise part way through a stream. A receiver ignores
+ * deltas until it has seen a keyframe.</p>
+ *
+ * <p>The state is for one stream of ticks, normally for one security, in each direction. This class is
+ * not thread-safe.</p>
+ */
+public final class MarketDataDeltaCodec {
+
+    static final int FIELDS = 18;
+    static final int SECURITY_ID = 0;
+    static final int TIME = 1;
+    static final int FIRST_PRICE = 10;
+    static final int KEYFRAME = 1 << FIELDS;
+    static final int ALL_FIELDS = KEYFRAME - 1;
+
+    private final int keyframeInterval;
+    private final boolean xorPrices;
+
+    private final long[] sent = new long[FIELDS];
+    private final long[] values = new long[FIELDS];
+    private int sinceKeyframe;
+    private boolean sentAny;
+
+    private final long[] received = new long[FIELDS];
+    private boolean receivedKeyframe;
+
+    /**
+     * @param keyframeInterval the maximum number of messages between keyframes.
+     * @param xorPrices        whether to XOR compress prices against the previous price.
+     */
+    public MarketDataDeltaCodec(int keyframeInterval, boolean xorPrices) {
+        if (keyframeInterval <= 0)
+            throw new IllegalArgumentException("keyframeInterval must be positive, was " + keyframeInterval);
+        this.keyframeInterval = keyframeInterval;
+        this.xorPrices = xorPrices;
+    }
+
+    /**
+     * Writes the fields which changed since the previous call, or all of them for a keyframe.
+     *
+     * @param md    the market data to write.
+     * @param bytes the destination to write to.
+     */
+    public void write(MarketData md, BytesOut<?> bytes) {
+        long[] values = this.values;
+        toValues(md, values);
+        long[] sent = this.sent;
+
+        int bitmap;
+        if (!sentAny || sinceKeyframe >= keyframeInterval || values[SECURITY_ID] != sent[SECURITY_ID]) {
+            bitmap = KEYFRAME | ALL_FIELDS;
+            sinceKeyframe = 0;
+            sentAny = true;
+        } else {
+            bitmap = 0;
+            for (int i = 0; i < FIELDS; i++)
+                if (values[i] != sent[i])
+                    bitmap |= 1 << i;
+        }
+        sinceKeyframe++;
+
+        bytes.writeStopBit(bitmap);
+        boolean keyframe = (bitmap & KEYFRAME) != 0;
+        // Only visit the fields present
+        for (int present = bitmap & ALL_FIELDS; present != 0; present &= present - 1) {
+            int i = Integer.numberOfTrailingZeros(present);
+            long value = values[i];
+            if (i == SECURITY_ID) {
+                bytes.writeLong(value);
+            } else if (keyframe && i >= FIRST_PRICE) {
+                bytes.writeLong(value);
+            } else if (keyframe || i < FIRST_PRICE) {
+                bytes.writeStopBit(keyframe ? value : value - sent[i]);
+            } else if (xorPrices) {
+                writeXor(bytes, value ^ sent[i]);
+            } else {
+                bytes.writeLong(value);
+            }
+            sent[i] = value;
+        }
+    }
+
+    /**
+     * Reads a message, updating {@code md} with the fields that changed.
+     *
+     * @param bytes the source to read from.
+     * @param md    the market data to update, which should be the same object for each call.
+     * @return {@code true} if {@code md} was updated, or {@code false} if this was a delta
+     * received before the first keyframe.
+     */
+    public boolean read(BytesIn<?> bytes, MarketData md) {
+        int bitmap = (int) bytes.readStopBit();
+        boolean keyframe = (bitmap & KEYFRAME) != 0;
+        long[] received = this.received;
+        boolean apply = keyframe || receivedKeyframe;
+        for (int present = bitmap & ALL_FIELDS; present != 0; present &= present - 1) {
+            int i = Integer.numberOfTrailingZeros(present);
+            long value;
+            if (i == SECURITY_ID || (keyframe && i >= FIRST_PRICE)) {
+                value = bytes.readLong();
+            } else if (keyframe) {
+                value = bytes.readStopBit();
+            } else if (i < FIRST_PRICE) {
+                value = received[i] + bytes.readStopBit();
+            } else if (xorPrices) {
+                value = received[i] ^ readXor(bytes);
+            } else {
+                value = bytes.readLong();
+            }
+            if (apply)
+                received[i] = value;
+        }
+        if (!apply)
+            return false;
+        receivedKeyframe = true;
+        fromValues(received, md);
+        return true;
+    }
+
+    static void writeXor(BytesOut<?> bytes, long xor) {
+        // xor is never 0 as the field is only written if it changed
+        int leading = Long.numberOfLeadingZeros(xor) >>> 3;
+        int trailing = Long.numberOfTrailingZeros(xor) >>> 3;
+        bytes.writeUnsignedByte((leading << 4) | trailing);
+        long middle = xor >>> (trailing << 3);
+        for (int n = 8 - leading - trailing; n > 0; n--, middle >>>= 8)
+            bytes.writeUnsignedByte((int) middle & 0xFF);
+    }
+
+    static long readXor(BytesIn<?> bytes) {
+        int header = bytes.readUnsignedByte();
+        int leading = header >>> 4;
+        int trailing = header & 0xF;
+        long middle = 0;
+        for (int n = 0, len = 8 - leading - trailing; n < len; n++)
+            middle |= (long) bytes.readUnsignedByte() << (n << 3);
+        return middle << (trailing << 3);
+    }
+
+    static void toValues(MarketData md, long[] values) {
+        values[SECURITY_ID] = md.securityId;
+        values[TIME] = md.time;
+        values[2] = md.bidQty0;
+        values[3] = md.bidQty1;
+        values[4] = md.bidQty2;
+        values[5] = md.bidQty3;
+        values[6] = md.askQty0;
+        values[7] = md.askQty1;
+        values[8] = md.askQty2;
+        values[9] = md.askQty3;
+        values[10] = Double.doubleToRawLongBits(md.bidPrice0);
+        values[11] = Double.doubleToRawLongBits(md.bidPrice1);
+        values[12] = Double.doubleToRawLongBits(md.bidPrice2);
+        values[13] = Double.doubleToRawLongBits(md.bidPrice3);
+        values[14] = Double.doubleToRawLongBits(md.askPrice0);
+        values[15] = Double.doubleToRawLongBits(md.askPrice1);
+        values[16] = Double.doubleToRawLongBits(md.askPrice2);
+        values[17] = Double.doubleToRawLongBits(md.askPrice3);
+    }
+
+    static void fromValues(long[] values, MarketData md) {
+        md.securityId = values[SECURITY_ID];
+        md.time = values[TIME];
+        md.bidQty0 = (int) values[2];
+        md.bidQty1 = (int) values[3];
+        md.bidQty2 = (int) values[4];
+        md.bidQty3 = (int) values[5];
+        md.askQty0 = (int) values[6];
+        md.askQty1 = (int) values[7];
+        md.askQty2 = (int) values[8];
+        md.askQty3 = (int) values[9];
+        md.bidPrice0 = Double.longBitsToDouble(values[10]);
+        md.bidPrice1 = Double.longBitsToDouble(values[11]);
+        md.bidPrice2 = Double.longBitsToDouble(values[12]);
+        md.bidPrice3 = Double.longBitsToDouble(values[13]);
+        md.askPrice0 = Double.longBitsToDouble(values[14]);
+        md.askPrice1 = Double.longBitsToDouble(values[15]);
+        md.askPrice2 = Double.longBitsToDouble(values[16]);
+        md.askPrice3 = Double.longBitsToDouble(values[17]);
+    }
+}
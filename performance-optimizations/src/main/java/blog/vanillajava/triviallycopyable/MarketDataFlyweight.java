@@ -0,0 +1,205 @@
+package blog.vanillajava.triviallycopyable;
+
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.core.Jvm;
+
+import static blog.vanillajava.triviallycopyable.TriviallyCopyableMarketData.LENGTH;
+import static blog.vanillajava.triviallycopyable.TriviallyCopyableMarketData.START;
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+
+/**
+ * A read-only flyweight over {@link MarketData} records held in a {@link BytesStore}.
+ *
+ * <p>Rather than copying a record into the fields of an object, each getter reads the
+ * field directly from the {@link BytesStore} at a movable base offset. This allows a
+ * consumer to scan millions of records, e.g. in a memory-mapped file, without
+ * materialising an object per record.</p>
+ *
+ * <p>The records are expected in the layout written by {@link TriviallyCopyableMarketData},
+ * or {@link MarketDataBatch}. As that layout is whatever the JVM chose for the object, the
+ * offset of each field is looked up once when this class is loaded rather than hard-coded
+ * as it is in {@link DirectMarketData}.</p>
+ *
+ * <p>This class is not thread-safe; each reading thread should have its own flyweight.</p>
+ */
+public final class MarketDataFlyweight {
+
+    static final long SECURITY_ID = offsetOf("securityId");
+    static final long TIME = offsetOf("time");
+    static final long BID_QTY0 = offsetOf("bidQty0");
+    static final long BID_QTY1 = offsetOf("bidQty1");
+    static final long BID_QTY2 = offsetOf("bidQty2");
+    static final long BID_QTY3 = offsetOf("bidQty3");
+    static final long ASK_QTY0 = offsetOf("askQty0");
+    static final long ASK_QTY1 = offsetOf("askQty1");
+    static final long ASK_QTY2 = offsetOf("askQty2");
+    static final long ASK_QTY3 = offsetOf("askQty3");
+    static final long BID_PRICE0 = offsetOf("bidPrice0");
+    static final long BID_PRICE1 = offsetOf("bidPrice1");
+    static final long BID_PRICE2 = offsetOf("bidPrice2");
+    static final long BID_PRICE3 = offsetOf("bidPrice3");
+    static final long ASK_PRICE0 = offsetOf("askPrice0");
+    static final long ASK_PRICE1 = offsetOf("askPrice1");
+    static final long ASK_PRICE2 = offsetOf("askPrice2");
+    static final long ASK_PRICE3 = offsetOf("askPrice3");
+
+    private BytesStore<?, ?> store;
+    private long offset;
+
+    /**
+     * Returns the offset of a field relative to the start of a trivially copyable record.
+     */
+    private static long offsetOf(String name) {
+        return Jvm.fieldOffset(MarketData.class, name) - START;
+    }
+
+    /**
+     * Points this flyweight at a record in a {@link BytesStore}.
+     *
+     * @param store  the store holding the records.
+     * @param offset the offset of the start of the record.
+     * @return this flyweight.
+     */
+    public MarketDataFlyweight wrap(BytesStore<?, ?> store, long offset) {
+        this.store = store;
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * Moves this flyweight to another record in the same {@link BytesStore}.
+     *
+     * @param offset the offset of the start of the record.
+     * @return this flyweight.
+     */
+    public MarketDataFlyweight offset(long offset) {
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * @return the offset of the start of the current record.
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * Moves this flyweight to the record immediately after the current one.
+     *
+     * @return this flyweight.
+     */
+    public MarketDataFlyweight next() {
+        offset += LENGTH;
+        return this;
+    }
+
+    /**
+     * @return the length of each record in bytes.
+     */
+    public static int recordLength() {
+        return LENGTH;
+    }
+
+    /**
+     * Copies the current record into an on-heap object, for when a copy is actually needed.
+     *
+     * @param data the object to copy into.
+     */
+    public void copyTo(TriviallyCopyableMarketData data) {
+        if (store.isDirectMemory()) {
+            MEMORY.copyMemory(store.addressForRead(offset), data, START, LENGTH);
+            return;
+        }
+        data.securityId = securityId();
+        data.time = time();
+        data.bidQty0 = bidQty0();
+        data.bidQty1 = bidQty1();
+        data.bidQty2 = bidQty2();
+        data.bidQty3 = bidQty3();
+        data.askQty0 = askQty0();
+        data.askQty1 = askQty1();
+        data.askQty2 = askQty2();
+        data.askQty3 = askQty3();
+        data.bidPrice0 = bidPrice0();
+        data.bidPrice1 = bidPrice1();
+        data.bidPrice2 = bidPrice2();
+        data.bidPrice3 = bidPrice3();
+        data.askPrice0 = askPrice0();
+        data.askPrice1 = askPrice1();
+        data.askPrice2 = askPrice2();
+        data.askPrice3 = askPrice3();
+    }
+
+    public long securityId() {
+        return store.readLong(offset + SECURITY_ID);
+    }
+
+    public long time() {
+        return store.readLong(offset + TIME);
+    }
+
+    public int bidQty0() {
+        return store.readInt(offset + BID_QTY0);
+    }
+
+    public int bidQty1() {
+        return store.readInt(offset + BID_QTY1);
+    }
+
+    public int bidQty2() {
+        return store.readInt(offset + BID_QTY2);
+    }
+
+    public int bidQty3() {
+        return store.readInt(offset + BID_QTY3);
+    }
+
+    public int askQty0() {
+        return store.readInt(offset + ASK_QTY0);
+    }
+
+    public int askQty1() {
+        return store.readInt(offset + ASK_QTY1);
+    }
+
+    public int askQty2() {
+        return store.readInt(offset + ASK_QTY2);
+    }
+
+    public int askQty3() {
+        return store.readInt(offset + ASK_QTY3);
+    }
+
+    public double bidPrice0() {
+        return store.readDouble(offset + BID_PRICE0);
+    }
+
+    public double bidPrice1() {
+        return store.readDouble(offset + BID_PRICE1);
+    }
+
+    public double bidPrice2() {
+        return store.readDouble(offset + BID_PRICE2);
+    }
+
+    public double bidPrice3() {
+        return store.readDouble(offset + BID_PRICE3);
+    }
+
+    public double askPrice0() {
+        return store.readDouble(offset + ASK_PRICE0);
+    }
+
+    public double askPrice1() {
+        return store.readDouble(offset + ASK_PRICE1);
+    }
+
+    public double askPrice2() {
+        return store.readDouble(offset + ASK_PRICE2);
+    }
+
+    public double askPrice3() {
+        return store.readDouble(offset + ASK_PRICE3);
+    }
+}
@@ -0,0 +1,201 @@
+package blog.vanillajava.triviallycopyable;
+
+import net.openhft.chronicle.bytes.BytesIn;
+import net.openhft.chronicle.bytes.BytesOut;
+import net.openhft.chronicle.core.Jvm;
+import net.openhft.chronicle.core.Maths;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static blog.vanillajava.triviallycopyable.TriviallyCopyableMarketData.START;
+
+/**
+ * The memory layout of {@link TriviallyCopyableMarketData} records, as a list of field names, types and
+ * offsets, and a 64-bit fingerprint of that list.
+ *
+ * <p>The layout of a trivially copyable record is whatever the JVM chose for the object, which can change
+ * when a field is added, or between JVM versions and options. A writer sends its layout once per connection
+ * or file with {@link #writeHeader}, and a {@link MarketDataLayoutReader} compares the fingerprint with its
+ * own, using a bulk copy only when they match. During a rolling upgrade, a reader of a different version
+ * still reads the fields the two layouts have in common.</p>
+ *
+ * <p>The description is of the form {@code securityId:long@0,time:long@8,...} in offset order.</p>
+ */
+public final class MarketDataLayout {
+
+    private static final MarketDataLayout LOCAL = parse(describe(MarketData.class, START));
+
+    private final String description;
+    private final long fingerprint;
+    private final String[] names;
+    private final String[] types;
+    private final int[] offsets;
+    private final int length;
+
+    private MarketDataLayout(String description, String[] names, String[] types, int[] offsets, int length) {
+        this.description = description;
+        this.fingerprint = Maths.hash64(description);
+        this.names = names;
+        this.types = types;
+        this.offsets = offsets;
+        this.length = length;
+    }
+
+    /**
+     * @return the layout of {@link TriviallyCopyableMarketData} in this JVM.
+     */
+    public static MarketDataLayout local() {
+        return LOCAL;
+    }
+
+    /**
+     * Describes the instance fields of a class by their offset relative to {@code start}.
+     */
+    static String describe(Class<?> type, long start) {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : type.getDeclaredFields())
+            if (!Modifier.isStatic(field.getModifiers()))
+                fields.add(field);
+        fields.sort(Comparator.comparingLong(f -> Jvm.fieldOffset(type, f.getName())));
+        StringBuilder sb = new StringBuilder();
+        for (Field field : fields) {
+            if (sb.length() > 0)
+                sb.append(',');
+            sb.append(field.getName()).append(':').append(field.getType().getName())
+                    .append('@').append(Jvm.fieldOffset(type, field.getName()) - start);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Parses a layout written by another process.
+     *
+     * @param description a description as returned by {@link #description()}.
+     * @return the layout described.
+     * @throws IllegalArgumentException if the description is malformed or uses a non-primitive type.
+     */
+    public static MarketDataLayout parse(String description) {
+        String[] fields = description.isEmpty() ? new String[0] : description.split(",");
+        String[] names = new String[fields.length];
+        String[] types = new String[fields.length];
+        int[] offsets = new int[fields.length];
+        int length = 0;
+        for (int i = 0; i < fields.length; i++) {
+            int colon = fields[i].indexOf(':');
+            int at = fields[i].indexOf('@', colon + 1);
+            if (colon <= 0 || at < 0)
+                throw new IllegalArgumentException("Malformed field '" + fields[i] + "' in " + description);
+            names[i] = fields[i].substring(0, colon);
+            types[i] = fields[i].substring(colon + 1, at);
+            offsets[i] = Integer.parseInt(fields[i].substring(at + 1));
+            length = Math.max(length, offsets[i] + sizeOf(types[i]));
+        }
+        return new MarketDataLayout(description, names, types, offsets, length);
+    }
+
+    static int sizeOf(String type) {
+        switch (type) {
+            case "long":
+            case "double":
+                return 8;
+            case "int":
+            case "float":
+                return 4;
+            case "short":
+            case "char":
+                return 2;
+            case "byte":
+            case "boolean":
+                return 1;
+            default:
+                throw new IllegalArgumentException("Unsupported type " + type);
+        }
+    }
+
+    /**
+     * Writes the fingerprint and description, once before the records which use this layout.
+     *
+     * @param bytes the destination, typically the start of a connection or file.
+     */
+    public void writeHeader(BytesOut<?> bytes) {
+        bytes.writeLong(fingerprint);
+        bytes.write8bit(description);
+    }
+
+    /**
+     * Reads a header written by {@link #writeHeader}.
+     *
+     * @param bytes the source positioned at the header.
+     * @return the layout of the records which follow.
+     * @throws IllegalStateException if the fingerprint doesn't match the description.
+     */
+    public static MarketDataLayout readHeader(BytesIn<?> bytes) {
+        long fingerprint = bytes.readLong();
+        String description = bytes.read8bit();
+        if (description == null)
+            throw new IllegalStateException("Missing layout description");
+        // Avoid parsing the description when it's the same as ours
+        MarketDataLayout layout = fingerprint == LOCAL.fingerprint && description.equals(LOCAL.description)
+                ? LOCAL
+                : parse(description);
+        if (layout.fingerprint != fingerprint)
+            throw new IllegalStateException("Layout fingerprint " + Long.toHexString(fingerprint) + " doesn't match " + description);
+        return layout;
+    }
+
+    /**
+     * @return the description of each field, in offset order.
+     */
+    public String description() {
+        return description;
+    }
+
+    /**
+     * @return a hash of the description.
+     */
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the length of a record in this layout.
+     */
+    public int length() {
+        return length;
+    }
+
+    int fieldCount() {
+        return names.length;
+    }
+
+    /**
+     * @return the index of a field with the same name and type, or -1 if there isn't one.
+     */
+    int indexOf(String name, String type) {
+        for (int i = 0; i < names.length; i++)
+            if (names[i].equals(name) && types[i].equals(type))
+                return i;
+        return -1;
+    }
+
+    String name(int index) {
+        return names[index];
+    }
+
+    String type(int index) {
+        return types[index];
+    }
+
+    int offset(int index) {
+        return offsets[index];
+    }
+
+    @Override
+    public String toString() {
+        return Long.toHexString(fingerprint) + " " + description;
+    }
+}
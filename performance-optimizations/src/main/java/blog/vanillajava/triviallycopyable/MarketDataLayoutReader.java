@@ -0,0 +1,110 @@
+package blog.vanillajava.triviallycopyable;
+
+import net.openhft.chronicle.bytes.BytesIn;
+
+import static blog.vanillajava.triviallycopyable.TriviallyCopyableMarketData.START;
+import static net.openhft.chronicle.core.UnsafeMemory.MEMORY;
+
+/**
+ * Reads {@link TriviallyCopyableMarketData} records written with a {@link MarketDataLayout} which may not
+ * be the layout of this JVM.
+ *
+ * <p>When the fingerprints match, each record is read with the usual bulk copy, so the only cost on the
+ * hot path is one well predicted branch. Otherwise each field is copied from its offset in the writer's
+ * layout to its offset in ours. Fields the writer doesn't have, or has with a different type, are set to
+ * zero, and fields only the writer has are skipped.</p>
+ *
+ * <p>This class is not thread-safe; each reading thread should have its own reader.</p>
+ */
+public final class MarketDataLayoutReader {
+
+    private final MarketDataLayout remote;
+    private final boolean bulkCopy;
+    // field-mapped path: the offset in the object, the offset in the record and the size of each field
+    private final long[] localOffsets;
+    private final int[] remoteOffsets;
+    private final int[] sizes;
+
+    /**
+     * @param remote the layout the records were written with, usually from {@link MarketDataLayout#readHeader}.
+     */
+    public MarketDataLayoutReader(MarketDataLayout remote) {
+        this(remote, remote.fingerprint() == MarketDataLayout.local().fingerprint()
+                && remote.description().equals(MarketDataLayout.local().description()));
+    }
+
+    private MarketDataLayoutReader(MarketDataLayout remote, boolean bulkCopy) {
+        this.remote = remote;
+        this.bulkCopy = bulkCopy;
+        MarketDataLayout local = MarketDataLayout.local();
+        int count = local.fieldCount();
+        localOffsets = new long[count];
+        remoteOffsets = new int[count];
+        sizes = new int[count];
+        for (int i = 0; i < count; i++) {
+            String type = local.type(i);
+            int index = remote.indexOf(local.name(i), type);
+            localOffsets[i] = START + local.offset(i);
+            remoteOffsets[i] = index < 0 ? -1 : remote.offset(index);
+            sizes[i] = MarketDataLayout.sizeOf(type);
+        }
+    }
+
+    /**
+     * Creates a reader which always uses the field-mapped path, to compare it with the bulk copy.
+     */
+    static MarketDataLayoutReader fieldMapped(MarketDataLayout remote) {
+        return new MarketDataLayoutReader(remote, false);
+    }
+
+    /**
+     * @return {@code true} if records are read with a bulk copy, {@code false} if field by field.
+     */
+    public boolean isBulkCopy() {
+        return bulkCopy;
+    }
+
+    /**
+     * @return the layout the records were written with.
+     */
+    public MarketDataLayout remote() {
+        return remote;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @param bytes the source positioned at a record.
+     * @param md    the record to read into.
+     */
+    public void read(BytesIn<?> bytes, TriviallyCopyableMarketData md) {
+        if (bulkCopy)
+            md.readMarshallable(bytes);
+        else
+            readFieldMapped(bytes, md);
+    }
+
+    private void readFieldMapped(BytesIn<?> bytes, TriviallyCopyableMarketData md) {
+        long position = bytes.readPosition();
+        // Check the whole record is there before reading any of it
+        bytes.readSkip(remote.length());
+        for (int i = 0; i < sizes.length; i++) {
+            int remoteOffset = remoteOffsets[i];
+            long localOffset = localOffsets[i];
+            switch (sizes[i]) {
+                case 8:
+                    MEMORY.writeLong(md, localOffset, remoteOffset < 0 ? 0 : bytes.readLong(position + remoteOffset));
+                    break;
+                case 4:
+                    MEMORY.writeInt(md, localOffset, remoteOffset < 0 ? 0 : bytes.readInt(position + remoteOffset));
+                    break;
+                case 2:
+                    MEMORY.writeShort(md, localOffset, remoteOffset < 0 ? 0 : bytes.readShort(position + remoteOffset));
+                    break;
+                default:
+                    MEMORY.writeByte(md, localOffset, remoteOffset < 0 ? 0 : bytes.readByte(position + remoteOffset));
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package blog.vanillajava.triviallycopyable;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.render.GeneralDecimaliser;
+import net.openhft.chronicle.wire.ShortTextLongConverter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes {@link MarketData} as human-readable YAML or JSON, e.g. for an audit log, without reflection
+ * and without allocating, except for the prices which {@code TextWire} also allocates to write.
+ *
+ * <p>The output is the same as {@code TextWire} and {@code JSONWire} write for a {@link DefaultMarketData},
+ * including the {@code @ShortText} security and {@code @NanoTime} timestamp. The field names are encoded
+ * once, the security is decoded into a reused {@link StringBuilder}, the timestamp is formatted with
+ * integer arithmetic rather than {@code java.time}, and prices follow the same rules as {@code TextWire},
+ * e.g. {@code 2E6} for a multiple of a million, {@code 5.0E-4} below 0.001, and plain decimals otherwise.
+ * Like {@code TextWire}, it allocates for a price with more than about 15 significant digits, e.g. the result
+ * of a division, or with a magnitude under 10^-7 or of 10^15 or more.</p>
+ *
+ * <p>Each record is formatted into a reused {@code byte[]} and copied to the {@link Bytes} in one write,
+ * as the bounds checks on each small write to a {@link Bytes} cost more than formatting the digits.</p>
+ *
+ * <p>This class is not thread-safe; each writing thread should have its own writer.</p>
+ */
+public final class MarketDataTextWriter {
+
+    /**
+     * The text format written.
+     */
+    public enum Format {
+        /**
+         * One {@code name: value} per line, as {@code TextWire} writes.
+         */
+        YAML,
+        /**
+         * A single line JSON object, as {@code JSONWire} writes.
+         */
+        JSON
+    }
+
+    // TextWire writes magnitudes outside this range with Double.toString
+    private static final double MIN_WIRE_DOUBLE = 1e-7, MAX_WIRE_DOUBLE = 1e15;
+    // the limits of the search for the fewest decimal places, as in SimpleDecimaliser
+    private static final int MAX_PLACES = 18;
+    private static final long MAX_MANTISSA = 1_000_000_000_000_000L;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9,
+            1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18};
+
+    private static final String[] FIELDS = {
+            "securityId", "time",
+            "bidQty0", "bidQty1", "bidQty2", "bidQty3",
+            "askQty0", "askQty1", "askQty2", "askQty3",
+            "bidPrice0", "bidPrice1", "bidPrice2", "bidPrice3",
+            "askPrice0", "askPrice1", "askPrice2", "askPrice3"};
+
+    private final boolean yaml;
+    // the text before each value, e.g. "bidQty0: " or ",\"bidQty0\":"
+    private final byte[][] prefixes = new byte[FIELDS.length][];
+    private final StringBuilder shortText = new StringBuilder(16);
+    // longer than the longest record, as each of the 18 values is at most 32 bytes
+    private final byte[] buffer = new byte[1024];
+    // the same buffer, for the doubles only Bytes.append(double) formats as TextWire does
+    private final Bytes<byte[]> bufferBytes = Bytes.wrapForWrite(buffer).decimaliser(GeneralDecimaliser.GENERAL);
+    private int length;
+
+    /**
+     * @param format the format to write.
+     */
+    public MarketDataTextWriter(Format format) {
+        this.yaml = format == Format.YAML;
+        for (int i = 0; i < FIELDS.length; i++) {
+            String prefix = yaml
+                    ? FIELDS[i] + ": "
+                    : (i == 0 ? "{" : ",") + '"' + FIELDS[i] + "\":";
+            prefixes[i] = prefix.getBytes(StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    /**
+     * Appends one record to {@code bytes}.
+     *
+     * @param md    the market data to write.
+     * @param bytes the destination, typically reused for each record.
+     */
+    public void write(MarketData md, Bytes<?> bytes) {
+        length = 0;
+        prefix(0);
+        appendShortText(md.securityId);
+        endField();
+        prefix(1);
+        if (!yaml) append('"');
+        appendNanoTime(md.time);
+        if (!yaml) append('"');
+        endField();
+
+        appendInt(2, md.bidQty0);
+        appendInt(3, md.bidQty1);
+        appendInt(4, md.bidQty2);
+        appendInt(5, md.bidQty3);
+        appendInt(6, md.askQty0);
+        appendInt(7, md.askQty1);
+        appendInt(8, md.askQty2);
+        appendInt(9, md.askQty3);
+        appendDouble(10, md.bidPrice0);
+        appendDouble(11, md.bidPrice1);
+        appendDouble(12, md.bidPrice2);
+        appendDouble(13, md.bidPrice3);
+        appendDouble(14, md.askPrice0);
+        appendDouble(15, md.askPrice1);
+        appendDouble(16, md.askPrice2);
+        appendDouble(17, md.askPrice3);
+        if (!yaml)
+            append('}');
+        bytes.write(buffer, 0, length);
+    }
+
+    private void prefix(int field) {
+        byte[] prefix = prefixes[field];
+        System.arraycopy(prefix, 0, buffer, length, prefix.length);
+        length += prefix.length;
+    }
+
+    private void endField() {
+        if (yaml)
+            append('\n');
+    }
+
+    private void append(char ch) {
+        buffer[length++] = (byte) ch;
+    }
+
+    private void append(String s) {
+        for (int i = 0; i < s.length(); i++)
+            buffer[length++] = (byte) s.charAt(i);
+    }
+
+    private void appendInt(int field, int value) {
+        prefix(field);
+        appendLong(value);
+        endField();
+    }
+
+    private void appendDouble(int field, double value) {
+        prefix(field);
+        appendDouble(value);
+        endField();
+    }
+
+    private void appendLong(long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                append(Long.toString(value));
+                return;
+            }
+            append('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10)
+            digits++;
+        int end = length + digits;
+        for (int i = end - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length = end;
+    }
+
+    /**
+     * Appends {@code digits} digits of {@code value}, with leading zeros.
+     */
+    private void appendDigits(long value, int digits) {
+        int end = length + digits;
+        for (int i = end - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length = end;
+    }
+
+    /**
+     * Appends a {@code double} as {@code TextWire} and {@code JSONWire} do.
+     *
+     * <p>A multiple of a million or a thousand is written as e.g. {@code 2E6}, a magnitude under 0.001 is
+     * rounded to 16 decimal places and written as e.g. {@code 5.0E-4}, and anything else from
+     * {@value #MIN_WIRE_DOUBLE} to {@value #MAX_WIRE_DOUBLE} as a plain decimal. Others, NaN and the
+     * infinities are written with {@link Double#toString}, which allocates, except NaN is {@code null} in
+     * JSON.</p>
+     */
+    private void appendDouble(double value) {
+        double abs = Math.abs(value);
+        if (abs == 0) {
+            append(Double.doubleToRawLongBits(value) < 0 ? "-0.0" : "0.0");
+        } else if (!(abs >= MIN_WIRE_DOUBLE && abs < MAX_WIRE_DOUBLE)) {
+            append(!yaml && Double.isNaN(value) ? "null" : Double.toString(value));
+        } else if ((int) (abs / 1e6) * 1e6 == abs) {
+            appendLong((int) (value / 1e6));
+            append("E6");
+        } else if ((int) (abs / 1e3) * 1e3 == abs) {
+            appendLong((int) (value / 1e3));
+            append("E3");
+        } else if (abs < 1e-3) {
+            // the value in units of 10^-7, from 1 to under 10^4, scaled down to under 10
+            double scaled = Math.round(value * 1e16) / 1e9;
+            double absScaled = Math.abs(scaled);
+            int shift = absScaled < 10 ? 0 : absScaled < 100 ? 1 : absScaled < 1e3 ? 2 : absScaled < 1e4 ? 3 : 4;
+            appendPlain(scaled / POWERS_OF_TEN[shift]);
+            append("E-");
+            append((char) ('7' - shift));
+        } else {
+            appendPlain(value);
+        }
+    }
+
+    /**
+     * Appends a non-zero {@code double} as a plain decimal, as the {@code GeneralDecimaliser} {@code TextWire}
+     * uses does.
+     *
+     * <p>A price is usually a whole number of ticks, so {@code |value| * 10^places} is close to a whole number
+     * {@code m} for a small number of places. If {@code m / 10^places} is exactly {@code |value|}, the decimal
+     * reads back as the same value, as parsing and the division both round the exact quotient to the nearest
+     * {@code double}. As in {@code SimpleDecimaliser}, the fewest places are tried until {@code m} reaches
+     * 10^15. Longer mantissas, e.g. the result of a division, are formatted by the same decimaliser into this
+     * buffer, which like {@code TextWire} uses a {@code BigDecimal}.</p>
+     */
+    private void appendPlain(double value) {
+        double abs = Math.abs(value);
+        for (int places = 0; places <= MAX_PLACES; places++) {
+            long m = Math.round(abs * POWERS_OF_TEN[places]);
+            if (m / POWERS_OF_TEN[places] == abs) {
+                if (value < 0)
+                    append('-');
+                long scale = (long) POWERS_OF_TEN[places];
+                appendLong(m / scale);
+                append('.');
+                appendDigits(places == 0 ? 0 : m % scale, Math.max(places, 1));
+                return;
+            }
+            if (m >= MAX_MANTISSA)
+                break;
+        }
+        bufferBytes.writePosition(length);
+        bufferBytes.append(value);
+        length = (int) bufferBytes.writePosition();
+    }
+
+    /**
+     * Appends a {@code @ShortText} value, always quoted in JSON, and in YAML only when it is empty or has a
+     * character YAML would otherwise read as syntax, as {@code TextWire} does.
+     */
+    private void appendShortText(long value) {
+        StringBuilder sb = shortText;
+        sb.setLength(0);
+        ShortTextLongConverter.INSTANCE.append(sb, value);
+        char quote = !yaml ? '"' : yamlQuote(sb);
+        if (quote != 0)
+            append(quote);
+        for (int i = 0; i < sb.length(); i++) {
+            char ch = sb.charAt(i);
+            if (quote == '"' && (ch == '"' || ch == '\\'))
+                append('\\');
+            else if (quote == '\'' && ch == '\'')
+                append('\'');
+            append(ch);
+        }
+        if (quote != 0)
+            append(quote);
+    }
+
+    /**
+     * @return the quote needed for a YAML scalar, or 0 if none is needed.
+     */
+    private static char yamlQuote(CharSequence cs) {
+        int length = cs.length();
+        if (length == 0 || cs.charAt(0) == ' ' || cs.charAt(length - 1) == ' ')
+            return '"';
+        boolean needed = false;
+        for (int i = 0; i < length; i++) {
+            char ch = cs.charAt(i);
+            if (ch == '"')
+                return '\'';
+            if (ch < ' ' || "\\:#,'{}[]&*!|>%@`".indexOf(ch) >= 0)
+                needed = true;
+        }
+        return needed ? '"' : 0;
+    }
+
+    /**
+     * Appends a {@code @NanoTime} value as an ISO 8601 UTC timestamp, with trailing zeros of the fraction
+     * removed. As the converter does, zero and negative values are written as a number.
+     */
+    private void appendNanoTime(long nanos) {
+        if (nanos <= 0) {
+            appendLong(nanos);
+            return;
+        }
+        long seconds = nanos / 1_000_000_000L;
+        int fraction = (int) (nanos % 1_000_000_000L);
+        long days = seconds / 86_400;
+        int secondOfDay = (int) (seconds % 86_400);
+
+        // civil date from days since 1970-01-01, see http://howardhinnant.github.io/date_algorithms.html
+        long z = days + 719_468;
+        long era = z / 146_097;
+        int dayOfEra = (int) (z - era * 146_097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146_096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        appendLong(year);
+        append('-');
+        appendDigits(month, 2);
+        append('-');
+        appendDigits(day, 2);
+        append('T');
+        appendDigits(secondOfDay / 3600, 2);
+        append(':');
+        appendDigits(secondOfDay / 60 % 60, 2);
+        append(':');
+        appendDigits(secondOfDay % 60, 2);
+        if (fraction == 0)
+            return;
+        append('.');
+        int digits = 9;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        appendDigits(fraction, digits);
+    }
+}
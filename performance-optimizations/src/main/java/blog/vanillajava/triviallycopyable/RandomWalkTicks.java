@@ -0,0 +1,64 @@
+package blog.vanillajava.triviallycopyable;
+
+import java.util.Random;
+
+/**
+ * Generates a realistic stream of ticks for one security, with the mid price taking a random walk
+ * in whole ticks and only a few quantities changing on each update.
+ */
+final class RandomWalkTicks {
+    static final double TICK_SIZE = 0.01;
+
+    private final Random rand;
+    private final long securityId;
+    private long time = 1_700_000_000_000_000_000L;
+    private long midTicks = 10_000;
+    private final int[] bidQty = new int[4];
+    private final int[] askQty = new int[4];
+
+    RandomWalkTicks(long securityId, long seed) {
+        this.securityId = securityId;
+        this.rand = new Random(seed);
+        for (int i = 0; i < 4; i++) {
+            bidQty[i] = 100 * (1 + rand.nextInt(50));
+            askQty[i] = 100 * (1 + rand.nextInt(50));
+        }
+    }
+
+    /**
+     * Moves the book on by one update and writes it to {@code md}.
+     */
+    void next(MarketData md) {
+        // microseconds between updates
+        time += 1_000 + rand.nextInt(100_000);
+        int r = rand.nextInt(100);
+        if (r < 10) {
+            // the price moves by a tick, which changes every price
+            midTicks += rand.nextBoolean() ? 1 : -1;
+        } else {
+            // otherwise one or two quantities change
+            int[] qty = rand.nextBoolean() ? bidQty : askQty;
+            qty[rand.nextInt(4)] = 100 * (1 + rand.nextInt(50));
+            if (r > 70)
+                askQty[0] = 100 * (1 + rand.nextInt(50));
+        }
+        md.securityId = securityId;
+        md.time = time;
+        md.bidQty0 = bidQty[0];
+        md.bidQty1 = bidQty[1];
+        md.bidQty2 = bidQty[2];
+        md.bidQty3 = bidQty[3];
+        md.askQty0 = askQty[0];
+        md.askQty1 = askQty[1];
+        md.askQty2 = askQty[2];
+        md.askQty3 = askQty[3];
+        md.bidPrice0 = (midTicks - 1) * TICK_SIZE;
+        md.bidPrice1 = (midTicks - 2) * TICK_SIZE;
+        md.bidPrice2 = (midTicks - 3) * TICK_SIZE;
+        md.bidPrice3 = (midTicks - 4) * TICK_SIZE;
+        md.askPrice0 = (midTicks + 1) * TICK_SIZE;
+        md.askPrice1 = (midTicks + 2) * TICK_SIZE;
+        md.askPrice2 = (midTicks + 3) * TICK_SIZE;
+        md.askPrice3 = (midTicks + 4) * TICK_SIZE;
+    }
+}
@@ -0,0 +1,122 @@
+package blog.vanillajava.triviallycopyable;
+
+import net.openhft.chronicle.bytes.Bytes;
+import net.openhft.chronicle.bytes.BytesStore;
+import net.openhft.chronicle.wire.BinaryWire;
+import net.openhft.chronicle.wire.Wire;
+
+import java.nio.BufferOverflowException;
+
+/**
+ * A minimal single-producer, single-consumer ring of fixed size slots in off-heap memory, used to pass
+ * {@link MarketData} between two threads on different cores in {@link CrossCoreBenchmark}.
+ *
+ * <p>Each slot starts with an 8-byte sequence, written with an ordered write once the message is in
+ * place, so the consumer sees the whole message when it sees the sequence. The consumer publishes how far
+ * it has read in its own cache line so the producer doesn't overwrite an unread slot.</p>
+ *
+ * <p>A slot has room for the largest {@link MarketData} as self-describing {@link BinaryWire}, 295 bytes with
+ * every field at its widest, and a message which doesn't fit is rejected rather than spilling into the next
+ * slot.</p>
+ *
+ * <p>Both {@link #tryWrite} and {@link #tryRead} return immediately if they can't proceed, so neither thread
+ * can be left blocked at the end of a benchmark iteration.</p>
+ */
+final class SpscRing {
+    static final int SLOT_SIZE = 512;
+    static final int SLOT_HEADER = 8;
+    static final int READ_SEQUENCE = 0;
+    static final int SLOTS_START = 128;
+
+    private final int mask;
+    private final Bytes<Void> bytes;
+    private final BytesStore<?, Void> store;
+
+    // producer side
+    private final Bytes<Void> writeBytes;
+    private final Wire writeWire;
+    private long writeSequence;
+    private long readSequenceCache;
+
+    // consumer side
+    private final Bytes<Void> readBytes;
+    private final Wire readWire;
+    private long readSequence;
+
+    /**
+     * @param capacity the number of slots, a power of two.
+     */
+    SpscRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("capacity must be a power of two, was " + capacity);
+        mask = capacity - 1;
+        bytes = Bytes.allocateDirect(SLOTS_START + (long) capacity * SLOT_SIZE);
+        store = bytes.bytesStore();
+        writeBytes = store.bytesForWrite();
+        readBytes = store.bytesForWrite();
+        writeWire = BinaryWire.binaryOnly(writeBytes);
+        readWire = BinaryWire.binaryOnly(readBytes);
+        reset();
+    }
+
+    /**
+     * Clears the ring, which must only be called while neither thread is using it.
+     */
+    void reset() {
+        store.zeroOut(0, store.capacity());
+        writeSequence = readSequenceCache = readSequence = 0;
+        // Allow the producer and consumer to be different threads from the one which created the ring
+        writeBytes.singleThreadedCheckReset();
+        readBytes.singleThreadedCheckReset();
+    }
+
+    /**
+     * Writes a message if fewer than {@code maxInFlight} messages are unread.
+     *
+     * @return {@code true} if the message was written.
+     * @throws IllegalArgumentException if the message is too large for a slot.
+     */
+    boolean tryWrite(MarketData md, int maxInFlight) {
+        long sequence = writeSequence;
+        if (sequence - readSequenceCache >= maxInFlight) {
+            readSequenceCache = store.readVolatileLong(READ_SEQUENCE);
+            if (sequence - readSequenceCache >= maxInFlight)
+                return false;
+        }
+        long offset = SLOTS_START + (sequence & mask) * SLOT_SIZE;
+        writeBytes.clear();
+        writeBytes.writePosition(offset + SLOT_HEADER);
+        writeBytes.writeLimit(offset + SLOT_SIZE);
+        try {
+            writeWire.getValueOut().marshallable(md);
+        } catch (BufferOverflowException e) {
+            throw new IllegalArgumentException("Message larger than a slot of " + (SLOT_SIZE - SLOT_HEADER) + " bytes", e);
+        }
+        store.writeOrderedLong(offset, sequence + 1);
+        writeSequence = sequence + 1;
+        return true;
+    }
+
+    /**
+     * Reads the next message if there is one.
+     *
+     * @return {@code true} if a message was read into {@code md}.
+     */
+    boolean tryRead(MarketData md) {
+        long sequence = readSequence;
+        long offset = SLOTS_START + (sequence & mask) * SLOT_SIZE;
+        if (store.readVolatileLong(offset) != sequence + 1)
+            return false;
+        readBytes.clear();
+        readBytes.writePosition(offset + SLOT_SIZE);
+        readBytes.readPosition(offset + SLOT_HEADER);
+        readWire.getValueIn().marshallable(md);
+        readSequence = sequence + 1;
+        store.writeOrderedLong(READ_SEQUENCE, sequence + 1);
+        return true;
+    }
+
+    void releaseLast() {
+        bytes.releaseLast();
+    }
+}
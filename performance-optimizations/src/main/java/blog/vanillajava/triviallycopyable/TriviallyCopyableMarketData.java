@@ -16,9 +16,12 @@ import static net.openhft.chronicle.bytes.BytesUtil.*;
  * of bytes.</p>
  *
  * <p>Use this implementation when serialization performance is critical, and the memory
- * layout is known and consistent between sender and receiver.</p>
+ * layout is known and consistent between sender and receiver. Where it might not be, such as
+ * during a rolling upgrade, send the {@link MarketDataLayout} first and read with a
+ * {@link MarketDataLayoutReader}.</p>
  *
  * @see BytesUtil
+ * @see MarketDataLayout
  */
 public final class TriviallyCopyableMarketData extends MarketData {
 
@@ -0,0 +1,112 @@
+package blog.vanillajava.decimal;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * A {@link MidPriceKernel} using the JDK Vector API, with a scalar loop for the elements left over.
+ *
+ * <p>Rounding to 6 decimal places gives the same result as {@code MyBenchmark.round6}, scaling, adding 0.5
+ * and truncating, but without converting to {@code long}, as vector conversions between {@code double} and
+ * {@code long} aren't intrinsified on every JDK and CPU and are then much slower than the scalar loop.
+ * Dividing by 2 is done as multiplying by 0.5, which is exact and faster. The fixed-point mid halves each
+ * price with a shift before adding, as {@link FixedPrice#mid(long, long)} does, so it can't overflow, and
+ * there is no need for a vector division of {@code long} values.</p>
+ *
+ * <p>This is only built by the Java 17+ profile, and needs {@code --add-modules jdk.incubator.vector}.</p>
+ */
+public class VectorMidPriceKernel implements MidPriceKernel {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final double TWO_POW_52 = 0x1p52;
+
+    @Override
+    public void mid(double[] ap, double[] bp, double[] mp, int length) {
+        int i = 0;
+        for (int upper = DOUBLES.loopBound(length); i < upper; i += DOUBLES.length()) {
+            DoubleVector a = DoubleVector.fromArray(DOUBLES, ap, i);
+            DoubleVector b = DoubleVector.fromArray(DOUBLES, bp, i);
+            a.add(b).mul(0.5).intoArray(mp, i);
+        }
+        for (; i < length; i++)
+            mp[i] = (ap[i] + bp[i]) / 2;
+    }
+
+    @Override
+    public void roundedMid(double[] ap, double[] bp, double[] mp, int length) {
+        int i = 0;
+        for (int upper = DOUBLES.loopBound(length); i < upper; i += DOUBLES.length()) {
+            DoubleVector a = DoubleVector.fromArray(DOUBLES, ap, i);
+            DoubleVector b = DoubleVector.fromArray(DOUBLES, bp, i);
+            DoubleVector scaled = a.add(b).mul(0.5).mul(1e6).add(0.5);
+            DoubleVector magnitude = scaled.abs();
+            if (!magnitude.compare(VectorOperators.LT, TWO_POW_52).allTrue()) {
+                // too large to truncate this way, or NaN
+                for (int j = i; j < i + DOUBLES.length(); j++)
+                    mp[j] = MyBenchmark.round6((ap[j] + bp[j]) / 2);
+                continue;
+            }
+            // adding and subtracting 2^52 rounds to the nearest whole number, so take one off if it rounded up
+            DoubleVector whole = magnitude.add(TWO_POW_52).sub(TWO_POW_52);
+            whole = whole.sub(1.0, whole.compare(VectorOperators.GT, magnitude));
+            // truncate towards zero as (long) does, adding 0.0 to turn -0.0 into 0.0
+            whole.lanewise(VectorOperators.NEG, scaled.compare(VectorOperators.LT, 0.0))
+                    .add(0.0)
+                    .div(1e6)
+                    .intoArray(mp, i);
+        }
+        for (; i < length; i++)
+            mp[i] = MyBenchmark.round6((ap[i] + bp[i]) / 2);
+    }
+
+    @Override
+    public void spread(double[] ap, double[] bp, double[] sp, int length) {
+        int i = 0;
+        for (int upper = DOUBLES.loopBound(length); i < upper; i += DOUBLES.length()) {
+            DoubleVector a = DoubleVector.fromArray(DOUBLES, ap, i);
+            DoubleVector b = DoubleVector.fromArray(DOUBLES, bp, i);
+            a.sub(b).intoArray(sp, i);
+        }
+        for (; i < length; i++)
+            sp[i] = ap[i] - bp[i];
+    }
+
+    @Override
+    public void mid(long[] ap, long[] bp, long[] mp, int length) {
+        int i = 0;
+        for (int upper = LONGS.loopBound(length); i < upper; i += LONGS.length()) {
+            LongVector a = LongVector.fromArray(LONGS, ap, i);
+            LongVector b = LongVector.fromArray(LONGS, bp, i);
+            // the floor of the mid, halving each first so the sum can't overflow
+            LongVector floor = a.lanewise(VectorOperators.ASHR, 1)
+                    .add(b.lanewise(VectorOperators.ASHR, 1))
+                    .add(a.and(b).and(1));
+            // if a + b is odd the mid is floor + 0.5, which rounds away from zero when it is positive
+            LongVector odd = a.lanewise(VectorOperators.XOR, b).and(1);
+            LongVector nonNegative = floor.not().lanewise(VectorOperators.LSHR, 63);
+            floor.add(odd.and(nonNegative)).intoArray(mp, i);
+        }
+        for (; i < length; i++)
+            mp[i] = FixedPrice.mid(ap[i], bp[i]);
+    }
+
+    @Override
+    public void spread(long[] ap, long[] bp, long[] sp, int length) {
+        int i = 0;
+        for (int upper = LONGS.loopBound(length); i < upper; i += LONGS.length()) {
+            LongVector a = LongVector.fromArray(LONGS, ap, i);
+            LongVector b = LongVector.fromArray(LONGS, bp, i);
+            LongVector diff = a.sub(b);
+            // the difference overflowed if a and b have different signs and diff doesn't have the sign of a
+            if (a.lanewise(VectorOperators.XOR, b).and(a.lanewise(VectorOperators.XOR, diff))
+                    .compare(VectorOperators.LT, 0).anyTrue())
+                throw new ArithmeticException("long overflow");
+            diff.intoArray(sp, i);
+        }
+        for (; i < length; i++)
+            sp[i] = FixedPrice.subtract(ap[i], bp[i]);
+    }
+}